@@ -0,0 +1,287 @@
+package tech.vanyo.treePrinter.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.vanyo.treePrinter.TreePrinter;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Measures printing trees of the shapes used by the demo programs, from about 10 to about a million nodes, with
+    square and diagonal branches and with plain and ANSI colored labels.  Output goes to a Writer that just counts
+    chars, so that only the work of TreePrinter itself is measured.
+
+    Run with "mvn -P jmh compile exec:exec" (see pom.xml), which also reports allocation rates with the GC profiler
+    and writes the results as JSON.  Throughput and sample time (latency percentiles) are both reported.
+
+    JMH won't generate benchmarks for classes in the default package, where the demo programs are, so the demo
+    trees are built by the same methods here, on a Node class of their own.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xss16m")
+public class TreePrinterBenchmark {
+
+    // ANSI color codes cycled through by colored labels
+    private static final String[] COLORS = {"\u001B[31m", "\u001B[32m", "\u001B[33m", "\u001B[34m", "\u001B[35m"};
+    private static final String RESET = "\u001B[0m";
+
+    @State(Scope.Thread)
+    public static class Printer {
+        @Param({"true", "false"})
+        public boolean squareBranches;
+
+        @Param({"false", "true"})
+        public boolean ansi;
+
+        TreePrinter<Node> printer;
+        CountingWriter out;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            printer = TreePrinter.<Node>builder(ansi ? TreePrinterBenchmark::coloredLabel : n -> "" + n.value,
+                    n -> n.left, n -> n.right)
+                    .squareBranches(squareBranches)
+                    .build();
+            out = new CountingWriter();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SingleTree {
+        /*
+            A spine is a tree of height equal to its size, going alternately left and right, so that it stays
+            narrow; a spine of a million nodes all on one side would print a million lines a million columns wide.
+         */
+        @Param({"complete", "random", "spine", "collatz"})
+        public String shape;
+
+        @Param({"10", "1000", "100000", "1000000"})
+        public int size;
+
+        Node tree;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            switch (shape) {
+                case "complete": tree = completeLevelOrderTree(size); break;
+                case "random":   tree = randomTree(1, size, new Random(size)); break;
+                case "spine":    tree = spine(size); break;
+                case "collatz":  tree = collatzTree(size); break;
+                default: throw new IllegalArgumentException("unknown shape " + shape);
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class EnumeratedTrees {
+        // total number of nodes, roughly: all trees of the largest size whose total is at most this are printed
+        @Param({"10", "1000", "100000", "1000000"})
+        public int size;
+
+        List<Node> trees;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            int treeSize = 1;
+            while ((treeSize + 1) * catalan(treeSize + 1) <= size) treeSize++;
+            trees = enumTrees(1, treeSize);
+        }
+    }
+
+    /*
+        A complete tree with branchingFactor children per node, of at least size nodes, printed directly with an
+        n-ary printer (square branches only).
+     */
+    @State(Scope.Thread)
+    public static class NaryTree {
+        @Param({"4", "16"})
+        public int branchingFactor;
+
+        @Param({"1000", "100000"})
+        public int size;
+
+        TreePrinter<NaryNode> printer;
+        NaryNode tree;
+        CountingWriter out;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            printer = TreePrinter.<NaryNode>naryBuilder(n -> "" + n.value, n -> n.children).build();
+            int depth = 0;
+            long count = 1;
+            for (long levelSize = 1; count < size; count += levelSize) {
+                levelSize *= branchingFactor;
+                depth++;
+            }
+            tree = completeNaryTree(new int[]{1}, branchingFactor, depth);
+            out = new CountingWriter();
+        }
+    }
+
+    @Benchmark
+    public long printTree(Printer p, SingleTree t) {
+        p.printer.printTree(t.tree, p.out);
+        return p.out.count;
+    }
+
+    @Benchmark
+    public long printTrees(Printer p, EnumeratedTrees t) {
+        p.printer.printTrees(t.trees, 200, p.out);
+        return p.out.count;
+    }
+
+    @Benchmark
+    public long printNaryTree(NaryTree t) {
+        t.printer.printTree(t.tree, t.out);
+        return t.out.count;
+    }
+
+    private static String coloredLabel(Node n) {
+        return COLORS[n.value % COLORS.length] + n.value + RESET;
+    }
+
+    // as in CompleteTree
+    private static Node completeLevelOrderTree(int size) {
+        Node[] nodes = new Node[size];
+        for (int i = 0; i < size; i++) {
+            nodes[i] = new Node(i + 1, null, null);
+        }
+        for (int i = 0; i * 2 + 1 < size; i++) {
+            nodes[i].left = nodes[i * 2 + 1];
+            if (i * 2 + 2 < size) nodes[i].right = nodes[i * 2 + 2];
+        }
+        return nodes[0];
+    }
+
+    // as in RandomTree, but with a given Random so that the tree is the same from run to run
+    private static Node randomTree(int firstValue, int lastValue, Random r) {
+        if (firstValue > lastValue) return null;
+        int leftCount = r.nextInt(lastValue - firstValue + 1);
+        int rootValue = firstValue + leftCount;
+        return new Node(rootValue, randomTree(firstValue, rootValue - 1, r), randomTree(rootValue + 1, lastValue, r));
+    }
+
+    private static Node spine(int size) {
+        Node root = new Node(size, null, null);
+        for (int i = size - 1; i > 0; i--) {
+            root = (i % 2 == 0) ? new Node(i, root, null) : new Node(i, null, root);
+        }
+        return root;
+    }
+
+    // smallest tree of reverse Collatz sequences, as in CollatzTree, with at least size nodes
+    private static Node collatzTree(int size) {
+        for (int depth = 1; ; depth++) {
+            Node tree = collatzTree(1, 1, depth);
+            if (count(tree) >= size) return tree;
+        }
+    }
+
+    private static Node collatzTree(int start, int curLength, int maxLength) {
+        Node root = new Node(start, null, null);
+        if (curLength < maxLength) {
+            root.left = collatzTree(start * 2, curLength + 1, maxLength);
+            if (start % 6 == 4 && start > 4) root.right = collatzTree((start - 1) / 3, curLength + 1, maxLength);
+        }
+        return root;
+    }
+
+    // all trees with the values firstValue .. lastValue in order, as in EnumTrees
+    private static List<Node> enumTrees(int firstValue, int lastValue) {
+        List<Node> allTrees = new ArrayList<>();
+        if (firstValue > lastValue) {
+            allTrees.add(null);
+        } else {
+            for (int rootValue = firstValue; rootValue <= lastValue; rootValue++) {
+                for (Node leftTree : enumTrees(firstValue, rootValue - 1)) {
+                    for (Node rightTree : enumTrees(rootValue + 1, lastValue)) {
+                        allTrees.add(new Node(rootValue, leftTree, rightTree));
+                    }
+                }
+            }
+        }
+        return allTrees;
+    }
+
+    private static NaryNode completeNaryTree(int[] nextValue, int branchingFactor, int depth) {
+        NaryNode node = new NaryNode(nextValue[0]++);
+        if (depth > 0) {
+            for (int i = 0; i < branchingFactor; i++) {
+                node.children.add(completeNaryTree(nextValue, branchingFactor, depth - 1));
+            }
+        }
+        return node;
+    }
+
+    private static int count(Node tree) {
+        return tree == null ? 0 : 1 + count(tree.left) + count(tree.right);
+    }
+
+    private static long catalan(int n) {
+        long c = 1;
+        for (int i = 0; i < n; i++) c = c * 2 * (2 * i + 1) / (i + 2);
+        return c;
+    }
+
+    static final class Node {
+        final int value;
+        Node left;
+        Node right;
+
+        Node(int value, Node left, Node right) {
+            this.value = value;
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    static final class NaryNode {
+        final int value;
+        final List<NaryNode> children = new ArrayList<>();
+
+        NaryNode(int value) {
+            this.value = value;
+        }
+    }
+
+    // Writer that throws away what's written, keeping count of the chars
+    static final class CountingWriter extends Writer {
+        long count = 0;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public Writer append(CharSequence csq) {
+            count += csq.length();
+            return this;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
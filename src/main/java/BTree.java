@@ -0,0 +1,80 @@
+import tech.vanyo.treePrinter.TreePrinter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class BTree {
+
+    // maximum number of keys in a node
+    private static final int MAX_KEYS = 3;
+
+    // prints a B-tree built by inserting random keys, drawn directly as a tree with up to MAX_KEYS + 1 children per node
+    public static void main(String[] args) {
+        Random random = new Random();
+        Node root = new Node();
+        for (int i = 0; i < 40; i++) {
+            root = add(root, random.nextInt(100));
+        }
+
+        TreePrinter<Node> printer = TreePrinter.<Node>naryBuilder(n -> n.label(), n -> n.children)
+                .hspace(1)
+                .build();
+        printer.printTree(root);
+    }
+
+    // adds key to the tree, returning the root, which is a new node if the old root was split
+    private static Node add(Node root, int key) {
+        Node split = insert(root, key);
+        if (split == null) return root;
+        Node newRoot = new Node();
+        newRoot.keys.add(root.keys.remove(root.keys.size() - 1));
+        newRoot.children.add(root);
+        newRoot.children.add(split);
+        return newRoot;
+    }
+
+    /*
+        Inserts key into the subtree of node.  If node overflows, it's split: the returned node gets the upper half of
+        its keys and children, and the middle key is left as the last key of node, for the parent to take.
+     */
+    private static Node insert(Node node, int key) {
+        int i = 0;
+        while (i < node.keys.size() && node.keys.get(i) < key) i++;
+        if (node.children.isEmpty()) {
+            node.keys.add(i, key);
+        } else {
+            Node child = node.children.get(i);
+            Node split = insert(child, key);
+            if (split != null) {
+                node.keys.add(i, child.keys.remove(child.keys.size() - 1));
+                node.children.add(i + 1, split);
+            }
+        }
+        if (node.keys.size() <= MAX_KEYS) return null;
+
+        int middle = node.keys.size() / 2;
+        Node split = new Node();
+        split.keys.addAll(node.keys.subList(middle + 1, node.keys.size()));
+        node.keys.subList(middle + 1, node.keys.size()).clear();
+        if (!node.children.isEmpty()) {
+            split.children.addAll(node.children.subList(middle + 1, node.children.size()));
+            node.children.subList(middle + 1, node.children.size()).clear();
+        }
+        return split;
+    }
+
+    private static final class Node {
+        final List<Integer> keys = new ArrayList<>();
+        final List<Node> children = new ArrayList<>();
+
+        String label() {
+            StringBuilder label = new StringBuilder();
+            for (int key : keys) {
+                if (label.length() > 0) label.append('|');
+                label.append(key);
+            }
+            return label.toString();
+        }
+    }
+}
@@ -9,16 +9,16 @@ public class CollatzTree {
         root = collatzTree(15);
         // Collatz Conjecture: for every positive integer X, there is some N such that X appears in collatzTree(N) 
 
-        TreePrinter<TreeNode> printer = new TreePrinter<>(n -> ""+n.getValue(), n -> n.getLeft(), n -> n.getRight());
-
-        printer.setHspace(1);
-        printer.setSquareBranches(true);
-        printer.setLrAgnostic(true);
+        TreePrinter<TreeNode> printer = TreePrinter.<TreeNode>builder(n -> ""+n.getValue(), n -> n.getLeft(), n -> n.getRight())
+                .hspace(1)
+                .squareBranches(true)
+                .lrAgnostic(true)
+                .build();
         printer.printTree(root);
     }
 
 
-    private static TreeNode collatzTree(int depth) {
+    public static TreeNode collatzTree(int depth) {
         return collatzTree(1, 1, depth);
     }
 
@@ -2,12 +2,12 @@ import tech.vanyo.treePrinter.TreePrinter;
 
 public class CompleteTree {
 
-    static TreePrinter<TreeNode> printer = new TreePrinter<>(n -> ("" + n.getValue()), n -> n.getLeft(), n -> n.getRight());
+    static TreePrinter<TreeNode> printer = TreePrinter.<TreeNode>builder(n -> ("" + n.getValue()), n -> n.getLeft(), n -> n.getRight())
+            .hspace(2)
+            .squareBranches(true)
+            .build();
 
     public static void main(String[] args) {
-        printer.setHspace(2);
-        printer.setSquareBranches(true);
-
         TreeNode tree;
         tree = completeLevelOrderTree(90);
 
@@ -9,21 +9,22 @@ public class EnumDAGTrees {
     // Note that these trees are actually Directed Acyclic Graphs (DAGs), in that two identical subtrees are
     // represented by a single representation.
     // treePrinter doesn't know the difference; it traverses the structure as a tree.
-    // Also note that treePrinter doesn't detect cycles (don't give it graphs with cycles)
+    // Also note that treePrinter doesn't detect cycles (don't give it graphs with cycles), except when taking a snapshot
 
     public static void main(String[] args) {
 
         List<TreeNode> trees = enumTrees(7);
 
         /*
-            We declare a TreePrinter object, parameterized with the type of tree object it will be printing (in this
-            case TreeNode), and call the TreePrinter constructor, providing lambda functions to get the TreeNode's
-            label as a String, and to get the left and right and right subtrees.
+            We build a TreePrinter object, parameterized with the type of tree object it will be printing (in this
+            case TreeNode), providing lambda functions to get the TreeNode's label as a String, and to get the left
+            and right subtrees, and then any settings that differ from the defaults.
          */
-        TreePrinter<TreeNode> printer = new TreePrinter<>(n -> ""+n.getValue(), n -> n.getLeft(), n -> n.getRight());
+        TreePrinter<TreeNode> printer = TreePrinter.<TreeNode>builder(n -> ""+n.getValue(), n -> n.getLeft(), n -> n.getRight())
+                .squareBranches(true)
+                .build();
 
         // this prints trees in rows across the page
-        printer.setSquareBranches(true);
         printer.printTrees(trees,120);
 
     }
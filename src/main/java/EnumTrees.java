@@ -12,12 +12,13 @@ public class EnumTrees {
         List<TreeNode> trees = enumTrees(6);
 
         /*
-            We declare a TreePrinter object, parameterized with the type of tree object it will be printing (in this
-            case TreeNode), and call the TreePrinter constructor, providing lambda functions to get the TreeNode's
-            label as a String, and to get the left and right and right subtrees.
+            We build a TreePrinter object, parameterized with the type of tree object it will be printing (in this
+            case TreeNode), providing lambda functions to get the TreeNode's label as a String, and to get the left
+            and right subtrees, and then any settings that differ from the defaults.
          */
-        TreePrinter<TreeNode> printer = new TreePrinter<>(n -> labelForNode(n.getValue()), n -> n.getLeft(), n -> n.getRight());
-        printer.setSquareBranches(true);
+        TreePrinter<TreeNode> printer = TreePrinter.<TreeNode>builder(n -> labelForNode(n.getValue()), n -> n.getLeft(), n -> n.getRight())
+                .squareBranches(true)
+                .build();
         printer.printTrees(trees, 120);
     }
 
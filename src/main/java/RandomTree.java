@@ -10,56 +10,63 @@ public class RandomTree {
         TreeNode tree = randomTree(30);
 
         /*
-            We declare a TreePrinter object, parameterized with the type of tree object it will be printing (in this
-            case TreeNode), and call the TreePrinter constructor, providing lambda functions to get the TreeNode's
-            label as a String, and to get the left and right and right subtrees.
+            We build a TreePrinter object, parameterized with the type of tree object it will be printing (in this
+            case TreeNode), providing lambda functions to get the TreeNode's label as a String, and to get the left
+            and right subtrees, and then any settings that differ from the defaults.
          */
-        TreePrinter<TreeNode> printer = new TreePrinter<>(n -> nameForNumber(n.getValue()), n -> n.getLeft(), n -> n.getRight());
-        // set minimum horizontal spacing between node labels with setHspace
-        printer.setHspace(1);
-        // use square branches
-        printer.setSquareBranches(true);
+        TreePrinter<TreeNode> printer = TreePrinter.<TreeNode>builder(n -> nameForNumber(n.getValue()), n -> n.getLeft(), n -> n.getRight())
+                // set minimum horizontal spacing between node labels with hspace
+                .hspace(1)
+                // use square branches
+                .squareBranches(true)
+                .build();
         printer.printTree(tree);
         System.out.println();
 
-        printer = new TreePrinter<>(n -> ""+n.getValue(), n -> n.getLeft(), n -> n.getRight());
-        printer.setHspace(1);
-        // use square branches
-        printer.setSquareBranches(true);
+        printer = TreePrinter.<TreeNode>builder(n -> ""+n.getValue(), n -> n.getLeft(), n -> n.getRight())
+                .hspace(1)
+                // use square branches
+                .squareBranches(true)
+                .build();
         printer.printTree(tree);
         System.out.println();
 
         // option to render single left or right subtree as straight down branch (i.e. no indication of left or right)
-        printer.setLrAgnostic(true);
+        // (printers are immutable, so a variant is built from the settings of the last one)
+        printer = printer.toBuilder().lrAgnostic(true).build();
         printer.printTree(tree);
 
         // use diagonal branches
-        printer.setSquareBranches(false);
+        printer = printer.toBuilder().squareBranches(false).build();
         printer.printTree(tree);
         System.out.println();
 
-        printer.setHspace(3);
-        printer.setSquareBranches(true);
+        printer = printer.toBuilder().hspace(3).squareBranches(true).build();
         printer.printTree(tree);
         System.out.println();
 
-        printer.setSquareBranches(false);
+        printer = printer.toBuilder().squareBranches(false).build();
         printer.printTree(tree);
     }
 
     public static TreeNode randomTree(int n) {
-        return randomTree(1, n);
+        return randomTree(n, r);
     }
 
-    private static TreeNode randomTree(int firstValue, int lastValue) {
+    // random tree taking its shape from the given source, e.g. a seeded one, to get the same tree every time
+    public static TreeNode randomTree(int n, Random random) {
+        return randomTree(1, n, random);
+    }
+
+    private static TreeNode randomTree(int firstValue, int lastValue, Random random) {
         if (firstValue > lastValue) return null;
         else {
             int treeSize = lastValue - firstValue + 1;
-            int leftCount = r.nextInt(treeSize);
+            int leftCount = random.nextInt(treeSize);
             int rightCount = treeSize - leftCount - 1;
             TreeNode root = new TreeNode(firstValue + leftCount);
-            root.setLeft(randomTree(firstValue, firstValue + leftCount - 1));
-            root.setRight(randomTree(firstValue + leftCount + 1, lastValue));
+            root.setLeft(randomTree(firstValue, firstValue + leftCount - 1, random));
+            root.setRight(randomTree(firstValue + leftCount + 1, lastValue, random));
             return root;
         }
     }
@@ -0,0 +1,94 @@
+package tech.vanyo.treePrinter;
+
+/*
+    IndexedTree kept in arrays: the children of node i are left[i] and right[i] (IndexedTree.NONE if none), and its
+    label is labelTable[labelId[i]], so nodes with equal labels can share a single String.  A tree in heap order,
+    where the children of node i are nodes 2i + 1 and 2i + 2 (if there are that many nodes), needs no child arrays
+    at all.  The arrays aren't copied, so they shouldn't be changed while the tree is being printed.  They're
+    checked when the tree is made: a node number or label id out of range throws IllegalArgumentException.
+ */
+public final class ArrayTree implements IndexedTree {
+
+    private final int root;
+    private final int size;
+    private final int[] left;           // null in heap order
+    private final int[] right;
+    private final int[] labelId;
+    private final String[] labelTable;
+
+    public ArrayTree(int root, int[] left, int[] right, int[] labelId, String[] labelTable) {
+        if (left.length != labelId.length || right.length != labelId.length) {
+            throw new IllegalArgumentException("left, right and labelId must have one entry per node");
+        }
+        checkNode(root, labelId.length, "root");
+        for (int i = 0; i < labelId.length; i++) {
+            checkNode(left[i], labelId.length, "left child of node " + i);
+            checkNode(right[i], labelId.length, "right child of node " + i);
+        }
+        checkLabelIds(labelId, labelTable);
+        this.root = root;
+        this.size = labelId.length;
+        this.left = left;
+        this.right = right;
+        this.labelId = labelId;
+        this.labelTable = labelTable;
+    }
+
+    private ArrayTree(int[] labelId, String[] labelTable) {
+        this.root = labelId.length == 0 ? NONE : 0;
+        this.size = labelId.length;
+        this.left = null;
+        this.right = null;
+        this.labelId = labelId;
+        this.labelTable = labelTable;
+    }
+
+    // complete tree of labelId.length nodes in heap order, with node 0 as the root
+    public static ArrayTree heap(int[] labelId, String[] labelTable) {
+        checkLabelIds(labelId, labelTable);
+        return new ArrayTree(labelId, labelTable);
+    }
+
+    private static void checkNode(int node, int size, String what) {
+        if (node != NONE && (node < 0 || node >= size)) {
+            throw new IllegalArgumentException(what + " is " + node + ", not a node of a tree of " + size + " nodes");
+        }
+    }
+
+    private static void checkLabelIds(int[] labelId, String[] labelTable) {
+        for (int i = 0; i < labelId.length; i++) {
+            if (labelId[i] < 0 || labelId[i] >= labelTable.length) {
+                throw new IllegalArgumentException("label id of node " + i + " is " + labelId[i]
+                        + ", not an index of the label table of " + labelTable.length + " labels");
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int root() {
+        return root;
+    }
+
+    @Override
+    public int left(int node) {
+        if (left != null) return left[node];
+        long child = 2L * node + 1;
+        return child < size ? (int) child : NONE;
+    }
+
+    @Override
+    public int right(int node) {
+        if (right != null) return right[node];
+        long child = 2L * node + 2;
+        return child < size ? (int) child : NONE;
+    }
+
+    @Override
+    public String label(int node) {
+        return labelTable[labelId[node]];
+    }
+}
@@ -0,0 +1,72 @@
+package tech.vanyo.treePrinter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/*
+    Writer that encodes chars into a byte buffer with a single CharsetEncoder, and only writes the buffer to the
+    channel when it's full, or when flushed.  The buffer starts small and doubles, up to MAX_BUFFER_SIZE, each time
+    it fills, so that printing a small tree doesn't allocate a big buffer, and printing a huge one takes a write to
+    the channel per MAX_BUFFER_SIZE bytes.
+
+    Chars are expected to be written in whole lines, as LineBuffer does, so a surrogate pair is never split
+    between two writes.  Characters the charset can't encode are replaced.  The channel isn't closed by close.
+ */
+final class ChannelWriter extends Writer {
+
+    private static final int INITIAL_BUFFER_SIZE = 1 << 14;
+    private static final int MAX_BUFFER_SIZE = 1 << 20;
+
+    private final WritableByteChannel channel;
+    private final CharsetEncoder encoder;
+    private ByteBuffer bytes = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+    ChannelWriter(WritableByteChannel channel, Charset charset) {
+        this.channel = channel;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        CharBuffer in = CharBuffer.wrap(cbuf, off, len);
+        while (encoder.encode(in, bytes, false) == CoderResult.OVERFLOW) {
+            if (bytes.capacity() < MAX_BUFFER_SIZE) {
+                ByteBuffer larger = ByteBuffer.allocate(bytes.capacity() * 2);
+                ((Buffer) bytes).flip();
+                larger.put(bytes);
+                bytes = larger;
+            } else {
+                writeBuffer();
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writeBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    private void writeBuffer() throws IOException {
+        // the casts keep this working on Java 8, where flip and clear are only defined by Buffer
+        ((Buffer) bytes).flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        ((Buffer) bytes).clear();
+    }
+}
@@ -0,0 +1,117 @@
+package tech.vanyo.treePrinter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+    RenderListener that records every metric in a histogram, e.g. to be polled by a monitoring system, which can
+    then alert on slow calls or pathological (huge, deep or wide) trees.  Recording doesn't lock, so one listener
+    can be shared by printers used from any number of threads.
+ */
+public final class HistogramRenderListener implements RenderListener {
+
+    private final Histogram totalNanos = new Histogram();
+    private final Histogram labelNanos = new Histogram();
+    private final Histogram layoutNanos = new Histogram();
+    private final Histogram drawNanos = new Histogram();
+    private final Histogram writeNanos = new Histogram();
+    private final Histogram nodeCount = new Histogram();
+    private final Histogram maxDepth = new Histogram();
+    private final Histogram rows = new Histogram();
+    private final Histogram columns = new Histogram();
+    private final Histogram charsWritten = new Histogram();
+
+    @Override
+    public void rendered(RenderMetrics metrics) {
+        totalNanos.record(metrics.getTotalNanos());
+        labelNanos.record(metrics.getLabelNanos());
+        layoutNanos.record(metrics.getLayoutNanos());
+        drawNanos.record(metrics.getDrawNanos());
+        writeNanos.record(metrics.getWriteNanos());
+        nodeCount.record(metrics.getNodeCount());
+        maxDepth.record(metrics.getMaxDepth());
+        rows.record(metrics.getRows());
+        columns.record(metrics.getColumns());
+        charsWritten.record(metrics.getCharsWritten());
+    }
+
+    public Histogram getTotalNanos() { return totalNanos; }
+
+    public Histogram getLabelNanos() { return labelNanos; }
+
+    public Histogram getLayoutNanos() { return layoutNanos; }
+
+    public Histogram getDrawNanos() { return drawNanos; }
+
+    public Histogram getWriteNanos() { return writeNanos; }
+
+    public Histogram getNodeCount() { return nodeCount; }
+
+    public Histogram getMaxDepth() { return maxDepth; }
+
+    public Histogram getRows() { return rows; }
+
+    public Histogram getColumns() { return columns; }
+
+    public Histogram getCharsWritten() { return charsWritten; }
+
+    /*
+        Histogram of non-negative values in power of two buckets: bucket 0 counts zeros, and bucket i counts values
+        from 2^(i-1) to 2^i - 1.  Percentiles are therefore only accurate to within a factor of two, which is
+        plenty for spotting outliers, in return for a fixed 65 counters per histogram.
+     */
+    public static final class Histogram {
+
+        private static final int BUCKETS = 65;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long value) {
+            if (value < 0) value = 0;
+            counts.incrementAndGet(bucket(value));
+            count.incrementAndGet();
+            long currentMax = max.get();
+            while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+                currentMax = max.get();
+            }
+        }
+
+        public long getCount() { return count.get(); }
+
+        public long getMax() { return max.get(); }
+
+        public long getBucketCount(int bucket) { return counts.get(bucket); }
+
+        /*
+            Returns an upper bound on the value below which the given fraction (0 to 1) of recorded values fall:
+            the top of the bucket holding that value, but no more than the largest value recorded.
+         */
+        public long valueAtPercentile(double fraction) {
+            long total = count.get();
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(fraction * total));
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += counts.get(bucket);
+                if (seen >= rank) return Math.min(bucketTop(bucket), max.get());
+            }
+            return max.get();
+        }
+
+        public void reset() {
+            for (int bucket = 0; bucket < BUCKETS; bucket++) counts.set(bucket, 0);
+            count.set(0);
+            max.set(0);
+        }
+
+        private static int bucket(long value) {
+            return 64 - Long.numberOfLeadingZeros(value);
+        }
+
+        private static long bucketTop(int bucket) {
+            return bucket == 64 ? Long.MAX_VALUE : (1L << bucket) - 1;
+        }
+    }
+}
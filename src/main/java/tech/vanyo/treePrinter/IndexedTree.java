@@ -0,0 +1,26 @@
+package tech.vanyo.treePrinter;
+
+/*
+    Binary tree whose nodes are numbered rather than objects, e.g. a tree kept in arrays indexed by node number,
+    for printing large trees without a node object per node, or boxing, or calls through Function objects
+    (see TreePrinter.printIndexed).  Node numbers are non-negative; NONE stands for no node.  A node may be the
+    child of more than one node (as in a snapshot of a DAG), in which case its subtree is printed under each of
+    them, but a node must not be its own descendant.
+ */
+public interface IndexedTree {
+
+    int NONE = -1;
+
+    int root();
+
+    int left(int node);
+
+    int right(int node);
+
+    String label(int node);
+
+    // label of the placeholder printed for node's subtree when it's cut by maxDepth or maxNodes
+    default String elisionLabel(int node) {
+        return "\u2026";
+    }
+}
@@ -0,0 +1,163 @@
+package tech.vanyo.treePrinter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/*
+    Least recently used cache of node labels, for label functions that are costly to call (formatting numbers,
+    looking up names, adding colors), kept from one call to the next so that printing a tree again doesn't call
+    getLabel for its nodes at all.  Labels are keyed by the identity of the node, or by a key given by the caller
+    (e.g. the value a node holds), so that all the nodes with equal keys share one label.
+
+    Label strings are also interned, along with their measured width: nodes with equal labels share a single Label,
+    however they're keyed, and a label's width is measured once rather than every time it's laid out.
+
+    Both tables are split into stripes by hash, each an LRU map with a lock of its own, so that threads printing
+    with the same printer (or laying out a tree in parallel) seldom wait for each other.  A cached label costs one
+    lookup under one lock, and allocates nothing: nodes are looked up by identity through a probe key kept by the
+    stripe.  Each table holds about capacity entries, the stripes evicting independently.
+ */
+final class LabelCache<T> {
+
+    private static final int MAX_STRIPES = 16;
+    private static final int MIN_STRIPE_CAPACITY = 64;
+
+    private final Function<T, ?> key;           // or null to key labels by node identity
+    private final LabelWidth labelWidth;
+    private final Stripe<Object>[] labels;
+    private final Stripe<String>[] interned;
+    private final int stripeShift;
+
+    LabelCache(int capacity, Function<T, ?> key, LabelWidth labelWidth) {
+        this.key = key;
+        this.labelWidth = labelWidth;
+        int stripes = 1;
+        while (stripes < MAX_STRIPES && capacity / (stripes * 2) >= MIN_STRIPE_CAPACITY) stripes *= 2;
+        int stripeCapacity = (capacity + stripes - 1) / stripes;
+        this.labels = stripes(stripes, stripeCapacity);
+        this.interned = stripes(stripes, stripeCapacity);
+        this.stripeShift = 32 - Integer.numberOfTrailingZeros(stripes);
+    }
+
+    // the label of node, calling getLabel (outside the lock, as it may be slow) only if it isn't cached
+    Label label(T node, Function<T, String> getLabel) {
+        Object nodeKey = key == null ? null : key.apply(node);
+        Stripe<Object> stripe = labelStripe(node, nodeKey);
+        synchronized (stripe) {
+            Label cached = stripe.get(key == null ? stripe.probe(node) : nodeKey);
+            stripe.probe(null);
+            if (cached != null) return cached;
+        }
+
+        Label label = intern(getLabel.apply(node));
+        synchronized (stripe) {
+            stripe.put(key == null ? new IdentityKey(node) : nodeKey, label);
+        }
+        return label;
+    }
+
+    void remove(T node) {
+        Object nodeKey = key == null ? null : key.apply(node);
+        Stripe<Object> stripe = labelStripe(node, nodeKey);
+        synchronized (stripe) {
+            stripe.remove(key == null ? stripe.probe(node) : nodeKey);
+            stripe.probe(null);
+        }
+    }
+
+    void clear() {
+        for (Stripe<Object> stripe : labels) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+        for (Stripe<String> stripe : interned) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    private Stripe<Object> labelStripe(T node, Object nodeKey) {
+        return labels[stripe(key == null ? System.identityHashCode(node) : Objects.hashCode(nodeKey))];
+    }
+
+    // the interned Label of text, measuring it if it's new
+    private Label intern(String text) {
+        Stripe<String> stripe = interned[stripe(text.hashCode())];
+        synchronized (stripe) {
+            Label label = stripe.get(text);
+            if (label == null) {
+                label = new Label(text, labelWidth.width(text));
+                stripe.put(text, label);
+            }
+            return label;
+        }
+    }
+
+    // stripe of a hash, from its top bits, as the maps within a stripe index by the bottom bits
+    private int stripe(int hash) {
+        return labels.length == 1 ? 0 : (hash * 0x9E3779B9) >>> stripeShift;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> Stripe<K>[] stripes(int count, int capacity) {
+        Stripe<K>[] stripes = (Stripe<K>[]) new Stripe<?>[count];
+        for (int i = 0; i < count; i++) stripes[i] = new Stripe<>(capacity);
+        return stripes;
+    }
+
+    // a label and its width in columns, as measured by the printer's LabelWidth
+    static final class Label {
+        final String text;
+        final int width;
+
+        Label(String text, int width) {
+            this.text = text;
+            this.width = width;
+        }
+    }
+
+    // access ordered map evicting its least recently used entry beyond capacity; used while holding its monitor
+    private static final class Stripe<K> extends LinkedHashMap<K, Label> {
+        private final int capacity;
+        private final IdentityKey probe = new IdentityKey(null);
+
+        Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        // the probe key, set to look up node (or cleared, with null, so as not to keep the node reachable)
+        IdentityKey probe(Object node) {
+            probe.node = node;
+            return probe;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, Label> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    // wrapper making a node a map key by identity; only a stripe's probe is ever changed, and only under its lock
+    private static final class IdentityKey {
+        Object node;
+
+        IdentityKey(Object node) {
+            this.node = node;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof IdentityKey && ((IdentityKey) o).node == node;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(node);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package tech.vanyo.treePrinter;
+
+/*
+    Measures the number of columns a node label takes up when printed.
+ */
+@FunctionalInterface
+public interface LabelWidth {
+
+    int width(String label);
+
+    // number of chars in the label
+    LabelWidth LENGTH = String::length;
+
+    // number of chars in the label, not counting ANSI escape sequences (e.g. color codes); the default
+    LabelWidth ANSI = LabelWidths::ansiWidth;
+
+    // columns taken on a terminal, counting East Asian wide characters as two columns, combining marks and other
+    // zero width characters as none, and not counting ANSI escape sequences
+    LabelWidth DISPLAY = LabelWidths::displayWidth;
+}
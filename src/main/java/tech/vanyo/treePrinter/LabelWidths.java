@@ -0,0 +1,98 @@
+package tech.vanyo.treePrinter;
+
+/*
+    Implementations of the LabelWidth measures.  These scan the label by hand rather than stripping escape
+    sequences with a regular expression, so that measuring a label creates no objects, and a label without any
+    escape character costs no more than a search for one.
+ */
+final class LabelWidths {
+
+    private static final char ESC = '\u001b';
+
+    // ranges of East Asian wide and fullwidth code points, as pairs of first and last code point
+    private static final int[] WIDE_RANGES = {
+            0x1100, 0x115F,     // Hangul Jamo initial consonants
+            0x2E80, 0x303E,     // CJK radicals, Kangxi radicals, ideographic description, CJK symbols and punctuation
+            0x3041, 0x33FF,     // Hiragana, Katakana, Bopomofo, Hangul compatibility Jamo, Kanbun, CJK compatibility
+            0x3400, 0x4DBF,     // CJK unified ideographs extension A
+            0x4E00, 0x9FFF,     // CJK unified ideographs
+            0xA000, 0xA4CF,     // Yi syllables and radicals
+            0xAC00, 0xD7A3,     // Hangul syllables
+            0xF900, 0xFAFF,     // CJK compatibility ideographs
+            0xFE30, 0xFE4F,     // CJK compatibility forms
+            0xFF00, 0xFF60,     // fullwidth forms
+            0xFFE0, 0xFFE6,     // fullwidth signs
+            0x1F300, 0x1F64F,   // pictographs and emoticons
+            0x1F900, 0x1F9FF,   // supplemental symbols and pictographs
+            0x20000, 0x2FFFD,   // CJK unified ideographs extension B and later
+            0x30000, 0x3FFFD
+    };
+
+    private LabelWidths() {
+    }
+
+    static int ansiWidth(String label) {
+        int i = label.indexOf(ESC);
+        if (i < 0) return label.length();
+
+        int width = i;
+        int length = label.length();
+        while (i < length) {
+            int escapeEnd = label.charAt(i) == ESC ? escapeEnd(label, i) : i;
+            if (escapeEnd > i) {
+                i = escapeEnd;
+            } else {
+                width++;
+                i++;
+            }
+        }
+        return width;
+    }
+
+    static int displayWidth(String label) {
+        int width = 0;
+        int length = label.length();
+        int i = 0;
+        while (i < length) {
+            int codePoint = label.codePointAt(i);
+            if (codePoint == ESC) {
+                int escapeEnd = escapeEnd(label, i);
+                if (escapeEnd > i) {
+                    i = escapeEnd;
+                    continue;
+                }
+            }
+            width += codePointWidth(codePoint);
+            i += Character.charCount(codePoint);
+        }
+        return width;
+    }
+
+    /*
+        If there's an ANSI control sequence (ESC '[', any number of digits and semicolons, and a final char) at
+        index start of s, returns the index following it, otherwise returns start.
+     */
+    static int escapeEnd(String s, int start) {
+        int length = s.length();
+        if (start + 1 >= length || s.charAt(start + 1) != '[') return start;
+        int i = start + 2;
+        while (i < length && ((s.charAt(i) >= '0' && s.charAt(i) <= '9') || s.charAt(i) == ';')) i++;
+        return i < length ? i + 1 : start;
+    }
+
+    // columns taken by a code point, as counted by displayWidth
+    static int codePointWidth(int codePoint) {
+        if (codePoint < 0x300) return codePoint < 0x20 || (codePoint >= 0x7F && codePoint < 0xA0) ? 0 : 1;
+        switch (Character.getType(codePoint)) {
+            case Character.NON_SPACING_MARK:
+            case Character.ENCLOSING_MARK:
+            case Character.FORMAT:
+            case Character.CONTROL:
+                return 0;
+        }
+        for (int i = 0; i < WIDE_RANGES.length && codePoint >= WIDE_RANGES[i]; i += 2) {
+            if (codePoint <= WIDE_RANGES[i + 1]) return 2;
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,354 @@
+package tech.vanyo.treePrinter;
+
+/*
+    Immutable print layout of a subtree.
+
+    Horizontal positions are offsets relative to the subtree's root, which is at offset 0.  The root label is on
+    line 0, followed by the lines of the branches leading down to the subtrees, followed by the lines of the
+    subtrees themselves.  Instead of the text of each line, a layout only keeps the left and right contours of the
+    subtree (the leftmost and rightmost offset used on each line), which is all that's needed to decide how close
+    together two subtrees can be put under a new root.  The text is produced later, from the root offsets of each
+    subtree, by TreeDrawing.
+
+    Contours are linked lists that are shared between a subtree and its ancestors, in the style of Reingold-Tilford
+    threads: joining two subtrees copies at most the contour of the shorter subtree, so the total work of laying
+    out a tree is roughly linear in the number of nodes, rather than the number of nodes times the tree height.
+ */
+final class Layout {
+
+    // kinds of branches drawn between a root label and its subtrees
+    static final int NO_BRANCH = 0;
+    static final int VERTICAL = 1;          // │
+    static final int SQUARE_LEFT = 2;       // ┌┘
+    static final int SQUARE_RIGHT = 3;      // └┐
+    static final int SQUARE_BOTH = 4;       // ┌──┴──┐
+    static final int SLASH = 5;             // /
+    static final int BACKSLASH = 6;         // \
+    static final int DIAGONAL_BOTH = 7;     // / \ spreading over branchLines lines
+    static final int SQUARE_MANY = 8;       // ┌──┬──┴──┐ over three or more subtrees
+
+    final String label;
+    final int labelWidth;
+    final Layout left;
+    final Layout right;
+    final int leftX;            // offset of the root of the left subtree
+    final int rightX;           // offset of the root of the right subtree
+    final Layout[] children;    // subtrees of a SQUARE_MANY branch, left to right, or null
+    final int[] childX;         // offsets of the roots of the children
+    final int branch;
+    final int branchLines;      // number of lines between the root label and the subtrees
+    final int height;           // total number of lines
+    final int nodeCount;        // number of nodes in the subtree
+    final int depth;            // number of levels below the root
+    final int minX;             // leftmost offset on any line
+    final int maxX;             // rightmost offset on any line
+    private final Contour leftContour;
+    private final Contour rightContour;
+
+    private Layout(String label, int labelWidth, Layout left, Layout right, int leftX, int rightX, int branch,
+                   int branchLines, int minX, int maxX, Contour leftContour, Contour rightContour) {
+        this(label, labelWidth, left, right, leftX, rightX, null, null, branch, branchLines, minX, maxX,
+                leftContour, rightContour);
+    }
+
+    private Layout(String label, int labelWidth, Layout left, Layout right, int leftX, int rightX, Layout[] children,
+                   int[] childX, int branch, int branchLines, int minX, int maxX, Contour leftContour,
+                   Contour rightContour) {
+        this.label = label;
+        this.labelWidth = labelWidth;
+        this.left = left;
+        this.right = right;
+        this.leftX = leftX;
+        this.rightX = rightX;
+        this.children = children;
+        this.childX = childX;
+        this.branch = branch;
+        this.branchLines = branchLines;
+        int subtreeHeight = Math.max(left == null ? 0 : left.height, right == null ? 0 : right.height);
+        int subtreeNodes = (left == null ? 0 : left.nodeCount) + (right == null ? 0 : right.nodeCount);
+        int subtreeDepth = Math.max(left == null ? -1 : left.depth, right == null ? -1 : right.depth);
+        if (children != null) {
+            for (Layout child : children) {
+                subtreeHeight = Math.max(subtreeHeight, child.height);
+                subtreeNodes += child.nodeCount;
+                subtreeDepth = Math.max(subtreeDepth, child.depth);
+            }
+        }
+        this.height = 1 + branchLines + subtreeHeight;
+        this.nodeCount = 1 + subtreeNodes;
+        this.depth = 1 + subtreeDepth;
+        this.minX = minX;
+        this.maxX = maxX;
+        this.leftContour = leftContour;
+        this.rightContour = rightContour;
+    }
+
+    /*
+        Lays out a root with the given label over already laid out left and right subtrees (either of which may
+        be null).  The subtree layouts are not modified, and are shared by the returned layout.
+     */
+    static Layout join(String label, int labelWidth, Layout left, Layout right,
+                       int hspace, boolean squareBranches, boolean lrAgnostic) {
+        int leftHeight = left == null ? 0 : left.height;
+        int rightHeight = right == null ? 0 : right.height;
+
+        // The left and right subtree print representations have jagged edges, and we essentially we have to
+        // figure out how close together we can bring the left and right roots so that the edges just meet on
+        // some line.  Then we add hspace, and round up to next odd number.
+        int maxRootSpacing = 0;
+        Contour l = left == null ? null : left.rightContour;
+        Contour r = right == null ? null : right.leftContour;
+        int lShift = 0;
+        int rShift = 0;
+        for (int i = Math.min(leftHeight, rightHeight); i > 0; i--) {
+            int spacing = (l.offset + lShift) - (r.offset + rShift);
+            if (spacing > maxRootSpacing) maxRootSpacing = spacing;
+            lShift += l.nextShift;
+            l = l.next;
+            rShift += r.nextShift;
+            r = r.next;
+        }
+        int rootSpacing = maxRootSpacing + hspace;
+        if (rootSpacing % 2 == 0) rootSpacing++;
+        // rootSpacing is now the number of spaces between the roots of the two subtrees
+
+        // pick the branches leading to the subtrees, and the resulting offsets of the subtree roots
+        int branch = NO_BRANCH;
+        int branchLines = 1;
+        int leftX = 0;
+        int rightX = 0;
+        if (left == null) {
+            if (right == null) {
+                branchLines = 0;
+            } else if (squareBranches) {
+                if (lrAgnostic) {
+                    branch = VERTICAL;
+                } else {
+                    branch = SQUARE_RIGHT;
+                    rightX = 1;
+                }
+            } else {
+                branch = BACKSLASH;
+                rightX = 2;
+            }
+        } else if (right == null) {
+            if (squareBranches) {
+                if (lrAgnostic) {
+                    branch = VERTICAL;
+                } else {
+                    branch = SQUARE_LEFT;
+                    leftX = -1;
+                }
+            } else {
+                branch = SLASH;
+                leftX = -2;
+            }
+        } else if (squareBranches) {
+            branch = SQUARE_BOTH;
+            rightX = (rootSpacing / 2) + 1;
+            leftX = -rightX;
+        } else {
+            branch = DIAGONAL_BOTH;
+            if (rootSpacing == 1) {
+                rightX = 2;
+            } else {
+                branchLines = rootSpacing / 2;
+                rightX = (rootSpacing / 2) + 1;
+            }
+            leftX = -rightX;
+        }
+
+        // contours of the lines below the branches
+        Contour leftContour;
+        Contour rightContour;
+        if (left == null) {
+            leftContour = right == null ? null : shifted(right.leftContour, rightX);
+        } else if (rightHeight > leftHeight) {
+            leftContour = splice(left.leftContour, leftX, leftHeight, right.leftContour, rightX);
+        } else {
+            leftContour = shifted(left.leftContour, leftX);
+        }
+        if (right == null) {
+            rightContour = left == null ? null : shifted(left.rightContour, leftX);
+        } else if (leftHeight > rightHeight) {
+            rightContour = splice(right.rightContour, rightX, rightHeight, left.rightContour, leftX);
+        } else {
+            rightContour = shifted(right.rightContour, rightX);
+        }
+
+        int minX = Math.min(left == null ? 0 : left.minX + leftX, right == null ? 0 : right.minX + rightX);
+        int maxX = Math.max(left == null ? 0 : left.maxX + leftX, right == null ? 0 : right.maxX + rightX);
+
+        // add the branch lines, bottom up
+        for (int line = branchLines; line > 0; line--) {
+            int branchLeft;
+            int branchRight;
+            switch (branch) {
+                case SQUARE_LEFT:   branchLeft = -1;     branchRight = 0;      break;
+                case SQUARE_RIGHT:  branchLeft = 0;      branchRight = 1;      break;
+                case SQUARE_BOTH:   branchLeft = leftX;  branchRight = rightX; break;
+                case SLASH:         branchLeft = -1;     branchRight = -1;     break;
+                case BACKSLASH:     branchLeft = 1;      branchRight = 1;      break;
+                case DIAGONAL_BOTH: branchLeft = -line;  branchRight = line;   break;
+                default:            branchLeft = 0;      branchRight = 0;      break;
+            }
+            leftContour = new Contour(branchLeft, 0, leftContour);
+            rightContour = new Contour(branchRight, 0, rightContour);
+            minX = Math.min(minX, branchLeft);
+            maxX = Math.max(maxX, branchRight);
+        }
+
+        // and finally the root label
+        int labelLeft = -(labelWidth - 1) / 2;
+        int labelRight = labelWidth / 2;
+        leftContour = new Contour(labelLeft, 0, leftContour);
+        rightContour = new Contour(labelRight, 0, rightContour);
+        minX = Math.min(minX, labelLeft);
+        maxX = Math.max(maxX, labelRight);
+
+        return new Layout(label, labelWidth, left, right, leftX, rightX, branch, branchLines, minX, maxX,
+                leftContour, rightContour);
+    }
+
+    /*
+        Lays out a root with the given label over three or more already laid out subtrees, drawn with square
+        branches.  The subtrees are packed left to right, each as close to the ones before it as the right contour
+        of those and its own left contour allow (keeping a merged right contour of the subtrees packed so far, so
+        each subtree costs about the height of the shorter of the two), and the root is centered over the first and
+        last of them.  With fewer subtrees, use join with square branches and lrAgnostic, which lays them out the
+        same way.
+     */
+    static Layout joinAll(String label, int labelWidth, Layout[] children, int hspace) {
+        int n = children.length;
+
+        // offsets of the subtree roots, relative to the root of the first one until the root is placed
+        int[] childX = new int[n];
+        Contour packedRight = children[0].rightContour;
+        int packedHeight = children[0].height;
+        for (int i = 1; i < n; i++) {
+            Layout child = children[i];
+            int maxSpacing = childX[i - 1];
+            Contour l = packedRight;
+            Contour r = child.leftContour;
+            int lShift = 0;
+            int rShift = 0;
+            for (int line = Math.min(packedHeight, child.height); line > 0; line--) {
+                int spacing = (l.offset + lShift) - (r.offset + rShift);
+                if (spacing > maxSpacing) maxSpacing = spacing;
+                lShift += l.nextShift;
+                l = l.next;
+                rShift += r.nextShift;
+                r = r.next;
+            }
+            childX[i] = maxSpacing + hspace + 1;
+            // the root goes halfway between the first and last subtree roots, so their distance must be even
+            if (i == n - 1 && childX[i] % 2 != 0) childX[i]++;
+
+            // the new subtree is to the right of the others on every line they share
+            if (child.height >= packedHeight) {
+                packedRight = shifted(child.rightContour, childX[i]);
+                packedHeight = child.height;
+            } else {
+                packedRight = splice(child.rightContour, childX[i], child.height, packedRight, 0);
+            }
+        }
+        int center = childX[n - 1] / 2;
+        for (int i = 0; i < n; i++) {
+            childX[i] -= center;
+        }
+
+        // contours of the lines below the branches; the left one is merged from the right
+        Contour rightContour = shifted(packedRight, -center);
+        Contour leftContour = shifted(children[n - 1].leftContour, childX[n - 1]);
+        int leftHeight = children[n - 1].height;
+        for (int i = n - 2; i >= 0; i--) {
+            Layout child = children[i];
+            if (child.height >= leftHeight) {
+                leftContour = shifted(child.leftContour, childX[i]);
+                leftHeight = child.height;
+            } else {
+                leftContour = splice(child.leftContour, childX[i], child.height, leftContour, 0);
+            }
+        }
+
+        // the branch line and the root label
+        int labelLeft = -(labelWidth - 1) / 2;
+        int labelRight = labelWidth / 2;
+        leftContour = new Contour(labelLeft, 0, new Contour(childX[0], 0, leftContour));
+        rightContour = new Contour(labelRight, 0, new Contour(childX[n - 1], 0, rightContour));
+        int minX = Math.min(labelLeft, childX[0]);
+        int maxX = Math.max(labelRight, childX[n - 1]);
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, children[i].minX + childX[i]);
+            maxX = Math.max(maxX, children[i].maxX + childX[i]);
+        }
+
+        return new Layout(label, labelWidth, null, null, 0, 0, children, childX, SQUARE_MANY, 1, minX, maxX,
+                leftContour, rightContour);
+    }
+
+    // leftmost offset on each line
+    int[] leftEdges() {
+        return edges(leftContour);
+    }
+
+    // rightmost offset on each line
+    int[] rightEdges() {
+        return edges(rightContour);
+    }
+
+    private int[] edges(Contour contour) {
+        int[] edges = new int[height];
+        int shift = 0;
+        for (int i = 0; i < height; i++) {
+            edges[i] = contour.offset + shift;
+            shift += contour.nextShift;
+            contour = contour.next;
+        }
+        return edges;
+    }
+
+    // contour moved right by shift (which may be negative)
+    private static Contour shifted(Contour contour, int shift) {
+        return new Contour(contour.offset + shift, contour.nextShift + shift, contour.next);
+    }
+
+    /*
+        Returns a contour made up of the first count lines of prefix, moved by prefixShift, followed by the lines
+        of tail after its first count lines, moved by tailShift.  Only the lines taken from prefix are copied.
+     */
+    private static Contour splice(Contour prefix, int prefixShift, int count, Contour tail, int tailShift) {
+        for (int i = 0; i < count; i++) {
+            tailShift += tail.nextShift;
+            tail = tail.next;
+        }
+        int[] offsets = new int[count];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = prefix.offset + prefixShift;
+            prefixShift += prefix.nextShift;
+            prefix = prefix.next;
+        }
+        Contour contour = new Contour(offsets[count - 1], tailShift, tail);
+        for (int i = count - 2; i >= 0; i--) {
+            contour = new Contour(offsets[i], 0, contour);
+        }
+        return contour;
+    }
+
+    /*
+        One line of a contour.  The offset of a line is relative to a base position, and nextShift is how far the
+        base position moves for the next line, so that the tail of a contour can be shared by subtrees with
+        different roots.  The first line of a contour is always relative to the root of its subtree.
+     */
+    private static final class Contour {
+        final int offset;
+        final int nextShift;
+        final Contour next;
+
+        Contour(int offset, int nextShift, Contour next) {
+            this.offset = offset;
+            this.nextShift = nextShift;
+            this.next = next;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package tech.vanyo.treePrinter;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+    Least recently used cache of subtree layouts, keyed by the identity (not equality) of the subtree's root node.
+    Layouts are immutable, so a cached layout can be shared by any number of trees that contain the same node
+    object, e.g. subtrees shared in a DAG, or trees printed more than once.  Cached nodes are strongly referenced
+    until evicted or the cache is cleared.
+
+    Each entry also records the cached nodes it is a child of, so that when a node changes, the layouts that were
+    built from it (those of the node and of all the nodes above it) can be dropped, while the layouts of the rest
+    of the tree stay cached.  A node is only cached if its children are, and dropping a node also drops the nodes
+    above it, so the cached layouts never refer to a node whose changes couldn't be tracked.
+ */
+final class LayoutCache {
+
+    private static final Object[] NO_PARENTS = new Object[0];
+
+    private final int capacity;
+    private final Map<IdentityKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    LayoutCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    synchronized Layout get(Object node) {
+        Entry entry = entries.get(new IdentityKey(node));
+        return entry == null ? null : entry.layout;
+    }
+
+    /*
+        Caches the layout of node, whose children (either of which may be null) are left and right.
+     */
+    synchronized void put(Object node, Object left, Object right, Layout layout) {
+        Entry leftEntry = left == null ? null : entries.get(new IdentityKey(left));
+        Entry rightEntry = right == null ? null : entries.get(new IdentityKey(right));
+        if ((left != null && leftEntry == null) || (right != null && rightEntry == null)) return;
+
+        remove(node);
+        entries.put(new IdentityKey(node), new Entry(layout, left, right));
+        if (leftEntry != null) leftEntry.addParent(node);
+        if (rightEntry != null) rightEntry.addParent(node);
+
+        while (entries.size() > capacity) {
+            Iterator<IdentityKey> eldest = entries.keySet().iterator();
+            remove(eldest.next().node);
+        }
+    }
+
+    /*
+        Drops the cached layouts of node and of every cached node above it.
+     */
+    synchronized void remove(Object node) {
+        Deque<Object> pending = new ArrayDeque<>();
+        pending.push(node);
+        while (!pending.isEmpty()) {
+            Object removed = pending.pop();
+            Entry entry = entries.remove(new IdentityKey(removed));
+            if (entry == null) continue;
+            for (Object parent : entry.parents) {
+                pending.push(parent);
+            }
+            unlinkParent(entry.left, removed);
+            unlinkParent(entry.right, removed);
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    private void unlinkParent(Object child, Object parent) {
+        if (child == null) return;
+        Entry entry = entries.get(new IdentityKey(child));
+        if (entry != null) entry.removeParent(parent);
+    }
+
+    private static final class Entry {
+        final Layout layout;
+        final Object left;
+        final Object right;
+        Object[] parents = NO_PARENTS;
+
+        Entry(Layout layout, Object left, Object right) {
+            this.layout = layout;
+            this.left = left;
+            this.right = right;
+        }
+
+        void addParent(Object parent) {
+            for (Object p : parents) {
+                if (p == parent) return;
+            }
+            parents = Arrays.copyOf(parents, parents.length + 1);
+            parents[parents.length - 1] = parent;
+        }
+
+        void removeParent(Object parent) {
+            for (int i = 0; i < parents.length; i++) {
+                if (parents[i] == parent) {
+                    Object[] remaining = Arrays.copyOf(parents, parents.length - 1);
+                    System.arraycopy(parents, i + 1, remaining, i, parents.length - i - 1);
+                    parents = remaining;
+                    return;
+                }
+            }
+        }
+    }
+
+    // wrapper making a node a map key by identity
+    private static final class IdentityKey {
+        private final Object node;
+
+        IdentityKey(Object node) {
+            this.node = node;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof IdentityKey && ((IdentityKey) o).node == node;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(node);
+        }
+    }
+}
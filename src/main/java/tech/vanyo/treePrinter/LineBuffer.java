@@ -0,0 +1,107 @@
+package tech.vanyo.treePrinter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/*
+    Buffer that output lines are assembled in, and collected in until there are enough of them to write out in
+    one go, so that printing doesn't create a String for every line, and costs one call to the output (with its
+    locking, and possibly a system call) per WRITE_SIZE chars rather than per line.  Writers and StringBuilders are
+    written to straight from the buffer; other Appendables are handed a CharBuffer wrapping it.
+
+    Each thread keeps a buffer that's reused by every call it makes to print, so that once it has grown to size,
+    printing allocates nothing for output.
+ */
+final class LineBuffer {
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    private static final int WRITE_SIZE = 1 << 16;
+
+    // buffers grown larger than this (for lines of more than a few hundred thousand chars) aren't kept for reuse
+    private static final int MAX_REUSED_SIZE = 1 << 18;
+
+    private static final ThreadLocal<LineBuffer> REUSED = ThreadLocal.withInitial(LineBuffer::new);
+
+    private char[] chars = new char[256];
+    private int length = 0;
+    private long charsWritten = 0;
+    private boolean inUse = false;
+
+    /*
+        Returns the calling thread's buffer, emptied, or a new buffer if the thread's buffer is already in use by a
+        call further up the stack (e.g. printing from within a label function).  The buffer is to be released at
+        the end of the call.
+     */
+    static LineBuffer acquire() {
+        LineBuffer buffer = REUSED.get();
+        if (buffer.inUse) return new LineBuffer();
+        buffer.inUse = true;
+        buffer.length = 0;
+        buffer.charsWritten = 0;
+        return buffer;
+    }
+
+    void release() {
+        inUse = false;
+        if (chars.length > MAX_REUSED_SIZE) chars = new char[256];
+    }
+
+    long charsWritten() {
+        return charsWritten;
+    }
+
+    void append(char c) {
+        ensureCapacity(1);
+        chars[length++] = c;
+    }
+
+    void append(String s) {
+        ensureCapacity(s.length());
+        s.getChars(0, s.length(), chars, length);
+        length += s.length();
+    }
+
+    void append(String s, int start, int end) {
+        ensureCapacity(end - start);
+        s.getChars(start, end, chars, length);
+        length += end - start;
+    }
+
+    void append(char c, int count) {
+        if (count <= 0) return;
+        ensureCapacity(count);
+        Arrays.fill(chars, length, length + count, c);
+        length += count;
+    }
+
+    void appendLineSeparator() {
+        append(LINE_SEPARATOR);
+    }
+
+    // writes out the buffered lines once there are at least WRITE_SIZE chars of them
+    void writeIfFull(Appendable out) throws IOException {
+        if (length >= WRITE_SIZE) writeTo(out);
+    }
+
+    // writes out and empties the buffer
+    void writeTo(Appendable out) throws IOException {
+        if (length == 0) return;
+        if (out instanceof Writer) {
+            ((Writer) out).write(chars, 0, length);
+        } else if (out instanceof StringBuilder) {
+            ((StringBuilder) out).append(chars, 0, length);
+        } else {
+            out.append(CharBuffer.wrap(chars, 0, length));
+        }
+        charsWritten += length;
+        length = 0;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + extra));
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package tech.vanyo.treePrinter;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/*
+    Keeps a tree drawn on an ANSI terminal up to date as it changes, e.g. on a console that shows a self balancing
+    tree every few hundred milliseconds.  The view keeps the lines of the last frame it drew, and each refresh
+    sends only the cells that changed since then, as runs of chars placed with cursor positioning sequences, all in
+    a single write to the output (followed by a flush, if it's Flushable).  So the amount sent per refresh depends on
+    how much of the picture changed, not on the size of the tree, and the screen doesn't flicker.
+
+    The tree is still laid out and drawn in full on every refresh; with the printer's layout cache on, and changed
+    nodes reported with nodeChanged, only the paths from the changed nodes to the root are laid out again.
+
+    Rows containing ANSI escape sequences (e.g. colored labels) or chars that aren't one column wide are rewritten
+    whole whenever they change, as their chars don't map one to one onto screen columns.  The view draws from the
+    top left corner of the screen, and assumes nothing else writes to the screen between refreshes; after
+    something does, call invalidate to have the next refresh redraw everything.
+ */
+public final class LiveTreeView<T> {
+
+    private static final String CSI = "\u001b[";
+
+    // changed runs of a row closer together than this are sent as one, rather than with another cursor move
+    private static final int MIN_GAP = 8;
+
+    private final TreePrinter<T> printer;
+    private final Appendable out;
+    private final int height;
+    private final int width;
+    private String[] previous = null;   // the rows of the last frame, or null if the screen is to be redrawn
+    private long charsWritten = 0;
+
+    public LiveTreeView(TreePrinter<T> printer, Appendable out) {
+        this(printer, out, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    // a view showing at most the top left height lines and width columns of the tree, e.g. the size of the terminal
+    public LiveTreeView(TreePrinter<T> printer, Appendable out, int height, int width) {
+        this.printer = printer;
+        this.out = out;
+        this.height = height;
+        this.width = width;
+    }
+
+    /*
+        Draws the tree as it is now, sending the changes from the last frame.  The first refresh (and the first
+        after invalidate) clears the screen and draws the whole frame.
+     */
+    public synchronized void refresh(T root) {
+        StringBuilder frame = new StringBuilder();
+        if (height == Integer.MAX_VALUE && width == Integer.MAX_VALUE) {
+            printer.printTree(root, frame);
+        } else {
+            printer.printViewport(root, 0, 0, height, width, frame);
+        }
+        String[] rows = frame.length() == 0 ? new String[0] : frame.toString().split("\r?\n");
+
+        StringBuilder changes = new StringBuilder();
+        String[] old = previous;
+        if (old == null) {
+            changes.append(CSI).append("H").append(CSI).append("2J");
+            old = new String[0];
+        }
+        for (int row = 0; row < Math.max(rows.length, old.length); row++) {
+            String oldRow = row < old.length ? old[row] : "";
+            String newRow = row < rows.length ? rows[row] : "";
+            if (!newRow.equals(oldRow)) appendRowChanges(changes, row, oldRow, newRow);
+        }
+        if (changes.length() > 0) {
+            // leave the cursor under the tree
+            moveTo(changes, rows.length, 0);
+            try {
+                out.append(changes);
+                if (out instanceof Flushable) ((Flushable) out).flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            charsWritten += changes.length();
+        }
+        previous = rows;
+    }
+
+    // makes the next refresh clear the screen and redraw the whole frame
+    public synchronized void invalidate() {
+        previous = null;
+    }
+
+    // total number of chars sent to the output, for keeping an eye on the cost of refreshes
+    public synchronized long getCharsWritten() {
+        return charsWritten;
+    }
+
+    /*
+        Appends what's needed to turn oldRow into newRow on the screen: the runs of columns that differ (a column
+        past the end of a row counts as a space), or the whole row if either row doesn't map chars to columns.
+     */
+    private static void appendRowChanges(StringBuilder changes, int row, String oldRow, String newRow) {
+        if (!oneColumnPerChar(oldRow) || !oneColumnPerChar(newRow)) {
+            moveTo(changes, row, 0);
+            changes.append(newRow).append(CSI).append('K');
+            return;
+        }
+
+        int length = Math.max(oldRow.length(), newRow.length());
+        int col = 0;
+        while (col < length) {
+            if (charAt(oldRow, col) == charAt(newRow, col)) {
+                col++;
+                continue;
+            }
+
+            // find the end of the run, taking in unchanged gaps shorter than MIN_GAP
+            int start = col;
+            int end = col + 1;
+            int same = 0;
+            for (int i = end; i < length && same < MIN_GAP; i++) {
+                if (charAt(oldRow, i) == charAt(newRow, i)) {
+                    same++;
+                } else {
+                    same = 0;
+                    end = i + 1;
+                }
+            }
+
+            moveTo(changes, row, start);
+            if (end >= length) {
+                // the rest of the row is blank: clear it rather than writing spaces
+                int textEnd = Math.min(end, newRow.length());
+                while (textEnd > start && newRow.charAt(textEnd - 1) == ' ') textEnd--;
+                if (textEnd > start) changes.append(newRow, start, textEnd);
+                changes.append(CSI).append('K');
+            } else {
+                for (int i = start; i < end; i++) {
+                    changes.append(charAt(newRow, i));
+                }
+            }
+            col = end;
+        }
+    }
+
+    private static boolean oneColumnPerChar(String row) {
+        return LabelWidths.displayWidth(row) == row.length();
+    }
+
+    private static char charAt(String row, int col) {
+        return col < row.length() ? row.charAt(col) : ' ';
+    }
+
+    // cursor position sequence for a row and column counted from 0
+    private static void moveTo(StringBuilder changes, int row, int col) {
+        changes.append(CSI).append(row + 1).append(';').append(col + 1).append('H');
+    }
+}
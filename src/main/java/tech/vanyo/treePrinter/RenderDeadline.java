@@ -0,0 +1,68 @@
+package tech.vanyo.treePrinter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+    A time limit and cancellation token for a call that renders a tree (see TreePrinter.printTree and render).
+    The printer checks it every so often while laying out the tree and writing lines, at a cost of a volatile read
+    and System.nanoTime() every thousand or so nodes.  Once the deadline has passed or the token has been
+    cancelled (from any thread), the call either throws CancellationException (the default) or, with truncating(),
+    stops: if it's still laying out the tree, subtrees not yet laid out are printed as placeholders (see
+    TreePrinter.Builder.elisionLabel), and if it's writing lines, lines not yet written are left out.  Either way
+    printTree prints a line at the end saying the rendering was stopped.  render and renderAsync don't: the
+    RenderedTree they return just has placeholders for the subtrees left out, and nothing marks it as truncated.
+ */
+public final class RenderDeadline {
+
+    private final long deadlineNanos;
+    private final boolean timed;
+    private final boolean truncates;
+    private final AtomicBoolean cancelled;
+
+    private RenderDeadline(long deadlineNanos, boolean timed, boolean truncates, AtomicBoolean cancelled) {
+        this.deadlineNanos = deadlineNanos;
+        this.timed = timed;
+        this.truncates = truncates;
+        this.cancelled = cancelled;
+    }
+
+    // a deadline the given time from now
+    public static RenderDeadline after(long timeout, TimeUnit unit) {
+        return new RenderDeadline(System.nanoTime() + unit.toNanos(timeout), true, false, new AtomicBoolean());
+    }
+
+    // no time limit, only cancellation
+    public static RenderDeadline cancellable() {
+        return new RenderDeadline(0, false, false, new AtomicBoolean());
+    }
+
+    /*
+        The same deadline, cancelled along with this one, but truncating the rendering when it passes rather than
+        throwing.
+     */
+    public RenderDeadline truncating() {
+        return new RenderDeadline(deadlineNanos, timed, true, cancelled);
+    }
+
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    public boolean hasPassed() {
+        return cancelled.get() || (timed && System.nanoTime() - deadlineNanos >= 0);
+    }
+
+    boolean truncates() {
+        return truncates;
+    }
+
+    // what happened, for the exception or the line printed at the end of a truncated rendering
+    String reason() {
+        return cancelled.get() ? "rendering cancelled" : "rendering deadline passed";
+    }
+}
@@ -0,0 +1,15 @@
+package tech.vanyo.treePrinter;
+
+/*
+    Receives the metrics of each call that prints or renders trees (printTree, printIndexed, printViewport,
+    printPages, printTrees, render, renderIndexed, and those built on them, such as printSnapshot), once it has
+    finished, on the thread that made the call.
+ */
+@FunctionalInterface
+public interface RenderListener {
+
+    void rendered(RenderMetrics metrics);
+
+    // the default; when set, nothing is measured
+    RenderListener NONE = metrics -> { };
+}
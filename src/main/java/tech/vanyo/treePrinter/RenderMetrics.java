@@ -0,0 +1,81 @@
+package tech.vanyo.treePrinter;
+
+/*
+    Where the time went in one call that printed trees, and how big the trees and the output were.
+
+    The time of each phase is summed over all the trees printed by the call, and over all threads when laying out
+    in parallel, so the phases can add up to more than the total (wall clock) time.  Label time, spent in the
+    getLabel, getLeft and getRight functions while laying out, is estimated from a sample of the calls (one in 16),
+    so it's only meaningful for trees of more than a few dozen nodes, and is taken out of layout time.
+ */
+public final class RenderMetrics {
+
+    private final int treeCount;
+    private final long totalNanos;
+    private final long labelNanos;
+    private final long layoutNanos;
+    private final long drawNanos;
+    private final long writeNanos;
+    private final long nodeCount;
+    private final int maxDepth;
+    private final long rows;
+    private final int columns;
+    private final long charsWritten;
+
+    RenderMetrics(int treeCount, long totalNanos, long labelNanos, long layoutNanos, long drawNanos,
+                  long writeNanos, long nodeCount, int maxDepth, long rows, int columns, long charsWritten) {
+        this.treeCount = treeCount;
+        this.totalNanos = totalNanos;
+        this.labelNanos = labelNanos;
+        this.layoutNanos = layoutNanos;
+        this.drawNanos = drawNanos;
+        this.writeNanos = writeNanos;
+        this.nodeCount = nodeCount;
+        this.maxDepth = maxDepth;
+        this.rows = rows;
+        this.columns = columns;
+        this.charsWritten = charsWritten;
+    }
+
+    // number of trees printed (including null, i.e. empty, trees)
+    public int getTreeCount() { return treeCount; }
+
+    // time from the start of the call to the end of printing
+    public long getTotalNanos() { return totalNanos; }
+
+    // estimated time getting and measuring node labels (with getLabel or from the label cache), in getLeft and
+    // getRight, and in the elision label function
+    public long getLabelNanos() { return labelNanos; }
+
+    // time laying out trees, not counting label time
+    public long getLayoutNanos() { return layoutNanos; }
+
+    // time placing labels and branches in lines
+    public long getDrawNanos() { return drawNanos; }
+
+    // time assembling lines and writing them to the output
+    public long getWriteNanos() { return writeNanos; }
+
+    // number of nodes printed, counting each placeholder for an elided subtree as one node
+    public long getNodeCount() { return nodeCount; }
+
+    // levels below the root of the deepest tree (0 if only roots were printed)
+    public int getMaxDepth() { return maxDepth; }
+
+    // number of lines written, including blank lines between rows of trees
+    public long getRows() { return rows; }
+
+    // width of the widest line written
+    public int getColumns() { return columns; }
+
+    // chars written, including ANSI escape sequences in labels and line separators
+    public long getCharsWritten() { return charsWritten; }
+
+    @Override
+    public String toString() {
+        return "RenderMetrics{trees=" + treeCount + ", totalNanos=" + totalNanos + ", labelNanos=" + labelNanos
+                + ", layoutNanos=" + layoutNanos + ", drawNanos=" + drawNanos + ", writeNanos=" + writeNanos
+                + ", nodes=" + nodeCount + ", maxDepth=" + maxDepth + ", rows=" + rows + ", columns=" + columns
+                + ", chars=" + charsWritten + "}";
+    }
+}
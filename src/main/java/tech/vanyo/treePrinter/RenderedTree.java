@@ -0,0 +1,68 @@
+package tech.vanyo.treePrinter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/*
+    A tree laid out and drawn by TreePrinter.render, that can be printed any number of times without the tree or
+    the printer.  It's kept as primitive arrays of positioned labels and runs of branch characters, and can be
+    stored in a compact binary form (toByteBuffer or writeTo), and read back (read), e.g. by another process, or
+    from a memory mapped file.
+ */
+public final class RenderedTree {
+
+    private final TreeDrawing drawing;
+
+    RenderedTree(TreeDrawing drawing) {
+        this.drawing = drawing;
+    }
+
+    public int getWidth() { return drawing.width; }
+
+    public int getHeight() { return drawing.height; }
+
+    public void print(Appendable out) {
+        LineBuffer lineBuffer = new LineBuffer();
+        try {
+            drawing.writeLines(lineBuffer, out);
+            lineBuffer.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // prints to the given channel, encoded as UTF-8
+    public void print(WritableByteChannel out) {
+        ChannelWriter writer = new ChannelWriter(out, StandardCharsets.UTF_8);
+        print(writer);
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // the binary form, in a new buffer positioned at its start
+    public ByteBuffer toByteBuffer() {
+        return drawing.toByteBuffer();
+    }
+
+    public void writeTo(WritableByteChannel out) throws IOException {
+        ByteBuffer bytes = drawing.toByteBuffer();
+        while (bytes.hasRemaining()) {
+            out.write(bytes);
+        }
+    }
+
+    /*
+        Reads a tree in binary form from the buffer's position on, leaving the position just after it, so that
+        several trees can be stored one after another.  Throws IllegalArgumentException if the buffer doesn't hold
+        a stored tree.
+     */
+    public static RenderedTree read(ByteBuffer in) {
+        return new RenderedTree(TreeDrawing.fromByteBuffer(in));
+    }
+}
@@ -0,0 +1,21 @@
+package tech.vanyo.treePrinter;
+
+/*
+    How printTrees(List, lineWidth) arranges trees in rows across the page (see TreePrinter.Builder.rowPacking).
+ */
+public enum RowPacking {
+
+    // trees in the order given, each row filled until the next tree doesn't fit (the default)
+    GREEDY,
+
+    /*
+        First fit decreasing height shelf packing, to save lines when tall and short trees are mixed: trees are
+        taken from tallest to shortest, each going into the first row that still has room for it, so each row holds
+        trees of similar heights.  Rows are printed from tallest to shortest, with the trees of a row from tallest
+        to shortest.
+     */
+    SHELF,
+
+    // as SHELF, but with the trees of each row in the order they were given
+    SHELF_KEEP_ORDER
+}
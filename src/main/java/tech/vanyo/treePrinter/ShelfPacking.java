@@ -0,0 +1,56 @@
+package tech.vanyo.treePrinter;
+
+import java.util.Arrays;
+
+/*
+    First fit shelf packing of items of given widths into shelves (rows) of a given capacity, for printing trees
+    in rows with RowPacking.SHELF.  Finding the first shelf with room for an item takes O(log n) time, with a
+    segment tree holding the most room left in any shelf of each range of shelves, so even hundreds of thousands of
+    items are packed in well under a second.
+ */
+final class ShelfPacking {
+
+    private ShelfPacking() {
+    }
+
+    /*
+        Packs items in the given order, each into the first shelf with room for it, or a new shelf if none has.  The
+        widths of the items on a shelf, plus gap between each two of them, add up to at most capacity, except that
+        an item wider than capacity goes on a shelf of its own.  Returns the shelf of each item (indexed by item,
+        not by position in order), with shelves numbered in the order they were opened.
+     */
+    static int[] pack(int[] widths, int[] order, int capacity, int gap) {
+        int size = 1;
+        while (size < order.length) size *= 2;
+
+        // room[size + s] is the room left on shelf s (-1 for shelves not yet opened), room[i] the max of its children
+        int[] room = new int[2 * size];
+        Arrays.fill(room, -1);
+        int[] shelf = new int[widths.length];
+        int shelves = 0;
+        for (int item : order) {
+            int needed = widths[item] + gap;
+            int s;
+            int left;
+            if (room[1] >= needed) {
+                int node = 1;
+                while (node < size) {
+                    node = room[2 * node] >= needed ? 2 * node : 2 * node + 1;
+                }
+                s = node - size;
+                left = room[node] - needed;
+            } else {
+                s = shelves++;
+                left = capacity - widths[item];
+            }
+            shelf[item] = s;
+
+            int node = size + s;
+            room[node] = left;
+            for (node /= 2; node > 0; node /= 2) {
+                room[node] = Math.max(room[2 * node], room[2 * node + 1]);
+            }
+        }
+        return shelf;
+    }
+}
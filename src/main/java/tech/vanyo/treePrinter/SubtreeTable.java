@@ -0,0 +1,199 @@
+package tech.vanyo.treePrinter;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/*
+    Hash consing table of subtree shapes, for printing a tree with repeated subtrees collapsed.  Subtrees are added
+    bottom up, each as its label and the shape numbers of its children, and subtrees with the same label and the
+    same child shapes get the same number, so after adding a whole tree there's one number per distinct subtree.
+
+    The collapsed tree (see collapse) is then the tree read in pre-order, left subtree first, with every repeat of
+    a subtree already read (other than a single node) replaced by a back reference to it.  Since each distinct
+    subtree is expanded at most once, the size of the collapsed tree is bounded by the number of distinct subtrees,
+    however many times they are repeated.
+ */
+final class SubtreeTable {
+
+    private String[] labels = new String[16];
+    private int[] left = new int[16];
+    private int[] right = new int[16];
+    private int count = 0;
+
+    // open addressing hash table of shape numbers plus one, 0 for an empty slot
+    private int[] slots = new int[32];
+
+    int size() {
+        return count;
+    }
+
+    // returns the number of the shape with the given label and child shapes, adding it if it's new
+    int shape(String label, int leftShape, int rightShape) {
+        int mask = slots.length - 1;
+        int slot = hash(label, leftShape, rightShape) & mask;
+        while (slots[slot] != 0) {
+            int shape = slots[slot] - 1;
+            if (left[shape] == leftShape && right[shape] == rightShape && labels[shape].equals(label)) return shape;
+            slot = (slot + 1) & mask;
+        }
+
+        if (count == labels.length) {
+            labels = Arrays.copyOf(labels, count * 2);
+            left = Arrays.copyOf(left, count * 2);
+            right = Arrays.copyOf(right, count * 2);
+        }
+        int shape = count++;
+        labels[shape] = label;
+        left[shape] = leftShape;
+        right[shape] = rightShape;
+        slots[slot] = shape + 1;
+        if (count * 2 > slots.length) rehash();
+        return shape;
+    }
+
+    /*
+        Returns the collapsed tree of the tree whose root has the given shape.  The first occurrence of a subtree
+        that is repeated gets the label "label [#k]", and each repeat is a single node labelled "[=#k]", with the
+        subtrees numbered from 1 in the order their first occurrences are read.  Placeholders for subtrees cut by
+        depth limits are labelled by elisionLabel, given the shape of the subtree.
+     */
+    IndexedTree collapse(int rootShape, IntFunction<String> elisionLabel) {
+        int capacity = 16;
+        int[] nodeShape = new int[capacity];
+        int[] nodeLeft = new int[capacity];
+        int[] nodeRight = new int[capacity];
+        boolean[] backReference = new boolean[capacity];
+        boolean[] expanded = new boolean[count];
+        boolean[] referenced = new boolean[count];
+        int nodeCount = 0;
+
+        // pending nodes: the node (or NONE for the root) whose child it is, which child, and the shape
+        int[] pendingParent = new int[16];
+        boolean[] pendingIsLeft = new boolean[16];
+        int[] pendingShape = new int[16];
+        int sp = 0;
+        pendingParent[0] = IndexedTree.NONE;
+        pendingShape[0] = rootShape;
+        while (sp >= 0) {
+            int parent = pendingParent[sp];
+            boolean isLeft = pendingIsLeft[sp];
+            int shape = pendingShape[sp];
+            sp--;
+
+            if (nodeCount == capacity) {
+                capacity *= 2;
+                nodeShape = Arrays.copyOf(nodeShape, capacity);
+                nodeLeft = Arrays.copyOf(nodeLeft, capacity);
+                nodeRight = Arrays.copyOf(nodeRight, capacity);
+                backReference = Arrays.copyOf(backReference, capacity);
+            }
+            int node = nodeCount++;
+            nodeShape[node] = shape;
+            nodeLeft[node] = IndexedTree.NONE;
+            nodeRight[node] = IndexedTree.NONE;
+            if (parent != IndexedTree.NONE) {
+                if (isLeft) nodeLeft[parent] = node;
+                else nodeRight[parent] = node;
+            }
+
+            boolean leaf = left[shape] == IndexedTree.NONE && right[shape] == IndexedTree.NONE;
+            if (!leaf && expanded[shape]) {
+                backReference[node] = true;
+                referenced[shape] = true;
+                continue;
+            }
+            expanded[shape] = true;
+
+            if (sp + 3 > pendingShape.length) {
+                pendingParent = Arrays.copyOf(pendingParent, pendingShape.length * 2);
+                pendingIsLeft = Arrays.copyOf(pendingIsLeft, pendingShape.length * 2);
+                pendingShape = Arrays.copyOf(pendingShape, pendingShape.length * 2);
+            }
+            // right pushed first, so that the left subtree is read first
+            if (right[shape] != IndexedTree.NONE) {
+                sp++;
+                pendingParent[sp] = node;
+                pendingIsLeft[sp] = false;
+                pendingShape[sp] = right[shape];
+            }
+            if (left[shape] != IndexedTree.NONE) {
+                sp++;
+                pendingParent[sp] = node;
+                pendingIsLeft[sp] = true;
+                pendingShape[sp] = left[shape];
+            }
+        }
+
+        // number the repeated subtrees in the order their first occurrences are read, i.e. the order of the nodes
+        int[] reference = new int[count];
+        int references = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            int shape = nodeShape[node];
+            if (!backReference[node] && referenced[shape]) reference[shape] = ++references;
+        }
+
+        return new CollapsedTree(nodeShape, nodeLeft, nodeRight, backReference, reference, elisionLabel);
+    }
+
+    private final class CollapsedTree implements IndexedTree {
+        private final int[] nodeShape;
+        private final int[] nodeLeft;
+        private final int[] nodeRight;
+        private final boolean[] backReference;
+        private final int[] reference;      // by shape, 0 if not repeated
+        private final IntFunction<String> elisionLabel;
+
+        CollapsedTree(int[] nodeShape, int[] nodeLeft, int[] nodeRight, boolean[] backReference, int[] reference,
+                      IntFunction<String> elisionLabel) {
+            this.nodeShape = nodeShape;
+            this.nodeLeft = nodeLeft;
+            this.nodeRight = nodeRight;
+            this.backReference = backReference;
+            this.reference = reference;
+            this.elisionLabel = elisionLabel;
+        }
+
+        @Override
+        public int root() {
+            return 0;
+        }
+
+        @Override
+        public int left(int node) {
+            return nodeLeft[node];
+        }
+
+        @Override
+        public int right(int node) {
+            return nodeRight[node];
+        }
+
+        @Override
+        public String label(int node) {
+            int shape = nodeShape[node];
+            if (backReference[node]) return "[=#" + reference[shape] + "]";
+            else if (reference[shape] > 0) return labels[shape] + " [#" + reference[shape] + "]";
+            else return labels[shape];
+        }
+
+        @Override
+        public String elisionLabel(int node) {
+            return elisionLabel.apply(nodeShape[node]);
+        }
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int shape = 0; shape < count; shape++) {
+            int slot = hash(labels[shape], left[shape], right[shape]) & mask;
+            while (slots[slot] != 0) slot = (slot + 1) & mask;
+            slots[slot] = shape + 1;
+        }
+    }
+
+    private static int hash(String label, int leftShape, int rightShape) {
+        int h = (label.hashCode() * 31 + leftShape) * 31 + rightShape;
+        return h ^ (h >>> 16);
+    }
+}
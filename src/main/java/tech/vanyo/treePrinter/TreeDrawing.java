@@ -0,0 +1,516 @@
+package tech.vanyo.treePrinter;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Text rendering of a laid out tree, kept as a list of positioned items (node labels and runs of branch
+    characters) grouped by line, rather than as strings.  Each label is placed exactly once, at the column given by
+    the offsets in its layout, and lines are only turned into text as they are written out.
+
+    A drawing may cover just a window (a range of lines and columns) of the full rendering of the tree, in which
+    case subtrees lying entirely outside the window aren't visited at all, and items partly outside the window
+    are clipped when written.
+
+    A drawing can be stored in a compact binary form (see toByteBuffer), and read back to be written out later,
+    maybe by another process, without the tree or its layout.
+ */
+final class TreeDrawing {
+
+    static final TreeDrawing EMPTY = new TreeDrawing(0, 0, null, new int[1], new int[0], new int[0], new int[0],
+            new String[0]);
+
+    // item kind for node labels; branches use the branch kinds defined in Layout
+    private static final int LABEL = -1;
+
+    // first int of the binary form, "TPD" and a format version
+    private static final int MAGIC = 0x54504401;
+    private static final int HEADER_INTS = 6;
+
+    final int width;
+    final int height;
+    private final boolean[] truncated;  // lines to end with an ellipsis, as they're cut off on the right, or null
+    private final int[] lineStart;      // items on line i are lineStart[i] .. lineStart[i + 1] - 1, left to right
+    private final int[] column;
+    private final int[] kind;
+    private final int[] size;           // number of columns taken by the item
+    private final String[] labels;      // label text of LABEL items
+
+    private TreeDrawing(int width, int height, boolean[] truncated, int[] lineStart, int[] column, int[] kind,
+                        int[] size, String[] labels) {
+        this.width = width;
+        this.height = height;
+        this.truncated = truncated;
+        this.lineStart = lineStart;
+        this.column = column;
+        this.kind = kind;
+        this.size = size;
+        this.labels = labels;
+    }
+
+    static TreeDrawing of(Layout root) {
+        return root == null ? EMPTY : of(root, 0, 0, root.height, root.maxX - root.minX + 1, false);
+    }
+
+    /*
+        Draws the window of the tree starting at line top and column left (the full rendering of the tree starts
+        at line 0, column 0), of at most the given height and width.  If markTruncation is set, lines that are cut
+        off at the right edge of the window end with an ellipsis.
+     */
+    static TreeDrawing of(Layout root, int top, int left, int height, int width, boolean markTruncation) {
+        if (root == null) return EMPTY;
+        height = Math.max(0, Math.min(height, root.height - top));
+        width = Math.max(0, Math.min(width, root.maxX - root.minX + 1 - left));
+        int bottom = top + height;
+        int right = left + width;
+
+        Items items = new Items(top, bottom, left, right);
+
+        // Pre-order traversal, left subtree first, so that the items of each line are found in left to right
+        // order.  An explicit stack is used, as for layout, so that deep trees don't overflow the call stack.
+        Layout[] stack = new Layout[16];
+        int[] stackX = new int[16];
+        int[] stackY = new int[16];
+        int sp = 0;
+        stack[0] = root;
+        stackX[0] = -root.minX;
+        stackY[0] = 0;
+        while (sp >= 0) {
+            Layout node = stack[sp];
+            int x = stackX[sp];
+            int y = stackY[sp];
+            sp--;
+
+            // skip subtrees outside the window
+            if (y >= bottom || y + node.height <= top || x + node.maxX < left || x + node.minX >= right) continue;
+
+            items.add(y, x - (node.labelWidth - 1) / 2, LABEL, node.labelWidth, node.label);
+            switch (node.branch) {
+                case Layout.VERTICAL:     items.add(y + 1, x, node.branch, 1, null);     break;
+                case Layout.SQUARE_LEFT:  items.add(y + 1, x - 1, node.branch, 2, null); break;
+                case Layout.SQUARE_RIGHT: items.add(y + 1, x, node.branch, 2, null);     break;
+                case Layout.SLASH:        items.add(y + 1, x - 1, node.branch, 1, null); break;
+                case Layout.BACKSLASH:    items.add(y + 1, x + 1, node.branch, 1, null); break;
+                case Layout.SQUARE_BOTH:
+                    items.add(y + 1, x + node.leftX, node.branch, node.rightX - node.leftX + 1, null);
+                    break;
+                case Layout.DIAGONAL_BOTH:
+                    for (int line = 1; line <= node.branchLines; line++) {
+                        items.add(y + line, x - line, node.branch, 2 * line + 1, null);
+                    }
+                    break;
+                case Layout.SQUARE_MANY:
+                    // drawn as text, as the positions of the branches down to the children vary
+                    String branches = squareManyBranches(node.childX);
+                    items.add(y + 1, x + node.childX[0], LABEL, branches.length(), branches);
+                    break;
+            }
+
+            if (sp + 2 >= stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+                stackX = Arrays.copyOf(stackX, stack.length);
+                stackY = Arrays.copyOf(stackY, stack.length);
+            }
+            int childY = y + 1 + node.branchLines;
+            if (node.children != null) {
+                if (sp + node.children.length >= stack.length) {
+                    int length = Math.max(stack.length * 2, sp + node.children.length + 1);
+                    stack = Arrays.copyOf(stack, length);
+                    stackX = Arrays.copyOf(stackX, length);
+                    stackY = Arrays.copyOf(stackY, length);
+                }
+                for (int i = node.children.length - 1; i >= 0; i--) {
+                    stack[++sp] = node.children[i];
+                    stackX[sp] = x + node.childX[i];
+                    stackY[sp] = childY;
+                }
+            }
+            if (node.right != null) {
+                stack[++sp] = node.right;
+                stackX[sp] = x + node.rightX;
+                stackY[sp] = childY;
+            }
+            if (node.left != null) {
+                stack[++sp] = node.left;
+                stackX[sp] = x + node.leftX;
+                stackY[sp] = childY;
+            }
+        }
+
+        boolean[] truncated = null;
+        if (markTruncation) {
+            truncated = new boolean[height];
+            int[] rightEdges = root.rightEdges();
+            for (int i = 0; i < height; i++) {
+                truncated[i] = rightEdges[top + i] - root.minX >= right;
+            }
+        }
+        return items.toDrawing(width, height, truncated);
+    }
+
+    // the branch line of a SQUARE_MANY node with its children at the given offsets, from the first to the last
+    private static String squareManyBranches(int[] childX) {
+        int first = childX[0];
+        char[] line = new char[childX[childX.length - 1] - first + 1];
+        Arrays.fill(line, '\u2500');
+        line[-first] = '\u2534';
+        for (int i = 1; i < childX.length - 1; i++) {
+            line[childX[i] - first] = childX[i] == 0 ? '\u253C' : '\u252C';
+        }
+        line[0] = '\u250C';
+        line[line.length - 1] = '\u2510';
+        return new String(line);
+    }
+
+    /*
+        Appends line i of the drawing, padded with spaces to the full width of the drawing.
+     */
+    void writeLine(LineBuffer buffer, int i) {
+        boolean lineTruncated = truncated != null && truncated[i];
+        int end = lineTruncated ? width - 1 : width;
+        int col = 0;
+        for (int item = lineStart[i]; item < lineStart[i + 1]; item++) {
+            int itemStart = column[item];
+            int itemEnd = itemStart + size[item];
+            if (itemEnd <= 0) continue;
+            if (itemStart >= end) break;
+            if (itemStart >= 0 && itemEnd <= end) {
+                buffer.append(' ', itemStart - col);
+                writeItem(buffer, item);
+            } else {
+                int from = Math.max(0, itemStart);
+                buffer.append(' ', from - col);
+                writeClippedItem(buffer, item, from - itemStart, Math.min(itemEnd, end) - itemStart);
+            }
+            col = Math.min(itemEnd, end);
+        }
+        buffer.append(' ', end - col);
+        if (lineTruncated) buffer.append('\u2026');
+    }
+
+    /*
+        Appends all the lines of the drawing, each followed by a line separator, writing the buffer to out as it
+        fills up.  What's left in the buffer at the end isn't written.
+     */
+    void writeLines(LineBuffer buffer, Appendable out) throws IOException {
+        for (int i = 0; i < height; i++) {
+            writeLine(buffer, i);
+            buffer.appendLineSeparator();
+            buffer.writeIfFull(out);
+        }
+    }
+
+    private void writeItem(LineBuffer buffer, int item) {
+        switch (kind[item]) {
+            case LABEL:
+                buffer.append(labels[item]);
+                break;
+            case Layout.VERTICAL:
+                buffer.append('\u2502');
+                break;
+            case Layout.SQUARE_LEFT:
+                buffer.append('\u250C');
+                buffer.append('\u2518');
+                break;
+            case Layout.SQUARE_RIGHT:
+                buffer.append('\u2514');
+                buffer.append('\u2510');
+                break;
+            case Layout.SQUARE_BOTH:
+                buffer.append('\u250C');
+                buffer.append('\u2500', size[item] / 2 - 1);
+                buffer.append('\u2534');
+                buffer.append('\u2500', size[item] / 2 - 1);
+                buffer.append('\u2510');
+                break;
+            case Layout.SLASH:
+                buffer.append('/');
+                break;
+            case Layout.BACKSLASH:
+                buffer.append('\\');
+                break;
+            case Layout.DIAGONAL_BOTH:
+                buffer.append('/');
+                buffer.append(' ', size[item] - 2);
+                buffer.append('\\');
+                break;
+        }
+    }
+
+    /*
+        Writes columns from (inclusive) to to (exclusive) of an item.  Within a label, ANSI escape sequences are
+        always written, so that colors are still set and reset.  Other chars are taken to be one column each,
+        unless the label was measured by its display width (see LabelWidth.DISPLAY), in which case each code point
+        takes the columns displayWidth gives it: zero width chars go with the char before them, and a wide char cut
+        by the edge of the window is replaced by spaces for the columns of it that are inside.
+     */
+    private void writeClippedItem(LineBuffer buffer, int item, int from, int to) {
+        if (kind[item] == LABEL) {
+            String label = labels[item];
+            boolean displayWidths = size[item] != LabelWidths.ansiWidth(label)
+                    && size[item] == LabelWidths.displayWidth(label);
+            int col = 0;
+            int i = 0;
+            boolean written = false;    // whether the last char with a width was written
+            while (i < label.length()) {
+                int escapeEnd = LabelWidths.escapeEnd(label, i);
+                if (escapeEnd > i) {
+                    buffer.append(label, i, escapeEnd);
+                    i = escapeEnd;
+                    continue;
+                }
+                int codePoint = displayWidths ? label.codePointAt(i) : label.charAt(i);
+                int charEnd = i + (displayWidths ? Character.charCount(codePoint) : 1);
+                int width = displayWidths ? LabelWidths.codePointWidth(codePoint) : 1;
+                if (width == 0) {
+                    if (written) buffer.append(label, i, charEnd);
+                } else if (col >= from && col + width <= to) {
+                    buffer.append(label, i, charEnd);
+                    written = true;
+                } else {
+                    buffer.append(' ', Math.min(col + width, to) - Math.max(col, from));
+                    written = false;
+                }
+                col += width;
+                i = charEnd;
+            }
+            buffer.append(' ', to - Math.max(col, from));
+        } else {
+            for (int col = from; col < to; col++) {
+                buffer.append(branchChar(kind[item], size[item], col));
+            }
+        }
+    }
+
+    // char at column col of a branch item
+    private static char branchChar(int kind, int size, int col) {
+        switch (kind) {
+            case Layout.VERTICAL:      return '\u2502';
+            case Layout.SQUARE_LEFT:   return col == 0 ? '\u250C' : '\u2518';
+            case Layout.SQUARE_RIGHT:  return col == 0 ? '\u2514' : '\u2510';
+            case Layout.SQUARE_BOTH:   return col == 0 ? '\u250C' : col == size - 1 ? '\u2510' : col == size / 2 ? '\u2534' : '\u2500';
+            case Layout.SLASH:         return '/';
+            case Layout.BACKSLASH:     return '\\';
+            case Layout.DIAGONAL_BOTH: return col == 0 ? '/' : col == size - 1 ? '\\' : ' ';
+            default:                   return ' ';
+        }
+    }
+
+    /*
+        Returns the drawing in binary form, in a buffer positioned at its start.  The form is a header of six ints
+        (magic, 1 if lines are marked as truncated or else 0, width, height, number of items and number of distinct
+        labels), the line starts, then for each item its column, kind, size and label number (-1 for branches),
+        then the offset of each distinct label within the label text and the end offset, then the label text in
+        UTF-8, and finally, if lines are marked as truncated, one byte per line, 1 if truncated.  Ints are big
+        endian, and come before anything byte sized, so they stay aligned in memory mapped files.
+     */
+    ByteBuffer toByteBuffer() {
+        int itemCount = lineStart[height];
+        int[] labelNumbers = new int[itemCount];
+        Map<String, Integer> labelTable = new HashMap<>();
+        List<byte[]> labelText = new ArrayList<>();
+        int textLength = 0;
+        for (int item = 0; item < itemCount; item++) {
+            if (kind[item] != LABEL) {
+                labelNumbers[item] = -1;
+                continue;
+            }
+            Integer number = labelTable.get(labels[item]);
+            if (number == null) {
+                number = labelText.size();
+                labelTable.put(labels[item], number);
+                byte[] text = labels[item].getBytes(StandardCharsets.UTF_8);
+                labelText.add(text);
+                textLength += text.length;
+            }
+            labelNumbers[item] = number;
+        }
+        int labelCount = labelText.size();
+
+        int ints = HEADER_INTS + (height + 1) + 4 * itemCount + (labelCount + 1);
+        ByteBuffer out = ByteBuffer.allocate(4 * ints + textLength + (truncated == null ? 0 : height));
+        out.putInt(MAGIC).putInt(truncated == null ? 0 : 1).putInt(width).putInt(height).putInt(itemCount)
+                .putInt(labelCount);
+        putInts(out, lineStart, height + 1);
+        putInts(out, column, itemCount);
+        putInts(out, kind, itemCount);
+        putInts(out, size, itemCount);
+        putInts(out, labelNumbers, itemCount);
+        int offset = 0;
+        for (byte[] text : labelText) {
+            out.putInt(offset);
+            offset += text.length;
+        }
+        out.putInt(offset);
+        for (byte[] text : labelText) {
+            out.put(text);
+        }
+        if (truncated != null) {
+            for (boolean lineTruncated : truncated) out.put((byte) (lineTruncated ? 1 : 0));
+        }
+        ((Buffer) out).flip();
+        return out;
+    }
+
+    /*
+        Reads a drawing in the binary form written by toByteBuffer, from the position of the buffer (which may be
+        a mapped file), leaving the position just after it.
+     */
+    static TreeDrawing fromByteBuffer(ByteBuffer buffer) {
+        ByteBuffer in = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        if (in.remaining() < 4 * HEADER_INTS || in.getInt() != MAGIC) {
+            throw new IllegalArgumentException("not a stored tree drawing");
+        }
+        boolean markTruncation = in.getInt() != 0;
+        int width = in.getInt();
+        int height = in.getInt();
+        int itemCount = in.getInt();
+        int labelCount = in.getInt();
+        if (width < 0 || height < 0 || itemCount < 0 || labelCount < 0) {
+            throw new IllegalArgumentException("corrupt stored tree drawing");
+        }
+        int[] lineStart = getInts(in, height + 1);
+        int[] column = getInts(in, itemCount);
+        int[] kind = getInts(in, itemCount);
+        int[] size = getInts(in, itemCount);
+        int[] labelNumbers = getInts(in, itemCount);
+        int[] textOffsets = getInts(in, labelCount + 1);
+
+        String[] labelTable = new String[labelCount];
+        int textStart = in.position();
+        if (textOffsets[0] < 0 || textOffsets[labelCount] > in.remaining()) {
+            throw new IllegalArgumentException("corrupt stored tree drawing");
+        }
+        for (int i = 0; i < labelCount; i++) {
+            if (textOffsets[i + 1] < textOffsets[i]) throw new IllegalArgumentException("corrupt stored tree drawing");
+        }
+        for (int i = 0; i < labelCount; i++) {
+            byte[] text = new byte[textOffsets[i + 1] - textOffsets[i]];
+            ((Buffer) in).position(textStart + textOffsets[i]);
+            in.get(text);
+            labelTable[i] = new String(text, StandardCharsets.UTF_8);
+        }
+        ((Buffer) in).position(textStart + textOffsets[labelCount]);
+
+        boolean[] truncated = null;
+        if (markTruncation) {
+            if (in.remaining() < height) throw new IllegalArgumentException("corrupt stored tree drawing");
+            truncated = new boolean[height];
+            for (int i = 0; i < height; i++) truncated[i] = in.get() != 0;
+        }
+
+        // check everything writeLine relies on, so that a corrupt drawing can't make it fail later
+        if (lineStart[0] != 0 || lineStart[height] != itemCount) {
+            throw new IllegalArgumentException("corrupt stored tree drawing");
+        }
+        for (int i = 0; i < height; i++) {
+            if (lineStart[i + 1] < lineStart[i]) throw new IllegalArgumentException("corrupt stored tree drawing");
+        }
+        String[] labels = new String[itemCount];
+        for (int item = 0; item < itemCount; item++) {
+            boolean isLabel = kind[item] == LABEL;
+            if (isLabel != (labelNumbers[item] >= 0) || labelNumbers[item] >= labelCount
+                    || kind[item] < LABEL || kind[item] > Layout.DIAGONAL_BOTH || size[item] < 0) {
+                throw new IllegalArgumentException("corrupt stored tree drawing");
+            }
+            if (isLabel) labels[item] = labelTable[labelNumbers[item]];
+        }
+        // items of a line are left to right without overlapping, each at least partly within the width
+        for (int i = 0; i < height; i++) {
+            long previousEnd = Long.MIN_VALUE;
+            for (int item = lineStart[i]; item < lineStart[i + 1]; item++) {
+                long end = (long) column[item] + size[item];
+                if (column[item] < previousEnd || column[item] >= width || end <= 0) {
+                    throw new IllegalArgumentException("corrupt stored tree drawing");
+                }
+                previousEnd = end;
+            }
+        }
+        ((Buffer) buffer).position(in.position());
+        return new TreeDrawing(width, height, truncated, lineStart, column, kind, size, labels);
+    }
+
+    private static void putInts(ByteBuffer out, int[] values, int count) {
+        out.asIntBuffer().put(values, 0, count);
+        ((Buffer) out).position(out.position() + 4 * count);
+    }
+
+    private static int[] getInts(ByteBuffer in, int count) {
+        if (count < 0 || in.remaining() / 4 < count) throw new IllegalArgumentException("corrupt stored tree drawing");
+        int[] values = new int[count];
+        in.asIntBuffer().get(values);
+        ((Buffer) in).position(in.position() + 4 * count);
+        return values;
+    }
+
+    /*
+        Growable arrays of the items within a window, in the order found, with lines and columns made relative to
+        the window.
+     */
+    private static final class Items {
+        final int top;
+        final int bottom;
+        final int left;
+        final int right;
+        int count = 0;
+        int[] line = new int[64];
+        int[] column = new int[64];
+        int[] kind = new int[64];
+        int[] size = new int[64];
+        String[] labels = new String[64];
+
+        Items(int top, int bottom, int left, int right) {
+            this.top = top;
+            this.bottom = bottom;
+            this.left = left;
+            this.right = right;
+        }
+
+        void add(int line, int column, int kind, int size, String label) {
+            if (line < top || line >= bottom || column + size <= left || column >= right) return;
+            if (count == this.line.length) {
+                int capacity = count * 2;
+                this.line = Arrays.copyOf(this.line, capacity);
+                this.column = Arrays.copyOf(this.column, capacity);
+                this.kind = Arrays.copyOf(this.kind, capacity);
+                this.size = Arrays.copyOf(this.size, capacity);
+                this.labels = Arrays.copyOf(this.labels, capacity);
+            }
+            this.line[count] = line - top;
+            this.column[count] = column - left;
+            this.kind[count] = kind;
+            this.size[count] = size;
+            this.labels[count] = label;
+            count++;
+        }
+
+        // stable counting sort of the items by line
+        TreeDrawing toDrawing(int width, int height, boolean[] truncated) {
+            int[] lineStart = new int[height + 1];
+            for (int i = 0; i < count; i++) lineStart[line[i] + 1]++;
+            for (int i = 0; i < height; i++) lineStart[i + 1] += lineStart[i];
+            int[] next = Arrays.copyOf(lineStart, height);
+            int[] sortedColumn = new int[count];
+            int[] sortedKind = new int[count];
+            int[] sortedSize = new int[count];
+            String[] sortedLabels = new String[count];
+            for (int i = 0; i < count; i++) {
+                int j = next[line[i]]++;
+                sortedColumn[j] = column[i];
+                sortedKind[j] = kind[i];
+                sortedSize[j] = size[i];
+                sortedLabels[j] = labels[i];
+            }
+            return new TreeDrawing(width, height, truncated, lineStart, sortedColumn, sortedKind, sortedSize,
+                    sortedLabels);
+        }
+    }
+}
@@ -1,41 +1,149 @@
 package tech.vanyo.treePrinter;
 
+import java.io.Flushable;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
+/*
+    Prints binary trees, or trees with any number of children per node (see naryBuilder), as text.  A TreePrinter
+    is immutable once built, and holds no state between calls apart from its (optional, thread safe) layout and
+    label caches, so one printer can be shared by any number of threads, each printing to its own output.
+ */
 public class TreePrinter<T> {
 
-    private Function<T, String> getLabel;
-    private Function<T, T> getLeft;
-    private Function<T, T> getRight;
+    private final Function<T, String> getLabel;
+    private final Function<T, T> getLeft;
+    private final Function<T, T> getRight;
+    private final Function<T, List<T>> getChildren;
 
-    private PrintStream outStream = System.out;
+    private final PrintStream outStream;
 
-    private boolean squareBranches = false;
-    private boolean lrAgnostic = false;
-    private int hspace = 2;
-    private int tspace = 1;
+    private final boolean squareBranches;
+    private final boolean lrAgnostic;
+    private final int hspace;
+    private final int tspace;
+    private final LabelWidth labelWidth;
+    private final ForkJoinPool forkJoinPool;
+    private final int forkDepth;
+    private final int layoutCacheSize;
+    private final LayoutCache layoutCache;
+    private final int labelCacheSize;
+    private final Function<T, ?> labelKey;
+    private final LabelCache<T> labelCache;
+    private final int maxDepth;
+    private final int maxNodes;
+    private final int maxWidth;
+    private final Function<T, String> elisionLabel;
+    private final RenderListener renderListener;
+    private final boolean collapseRepeats;
+    private final RowPacking rowPacking;
 
+    // printer with the default settings
     public TreePrinter(Function<T, String> getLabel, Function<T, T> getLeft, Function<T, T> getRight) {
-        this.getLabel = getLabel;
-        this.getLeft = getLeft;
-        this.getRight = getRight;
+        this(new Builder<>(getLabel, getLeft, getRight));
     }
 
-    public void setPrintStream(PrintStream outStream) {
-        this.outStream = outStream;
+    private TreePrinter(Builder<T> builder) {
+        this.getLabel = builder.getLabel;
+        this.getLeft = builder.getLeft;
+        this.getRight = builder.getRight;
+        this.getChildren = builder.getChildren;
+        this.outStream = builder.outStream;
+        this.squareBranches = builder.squareBranches;
+        this.lrAgnostic = builder.lrAgnostic;
+        this.hspace = builder.hspace;
+        this.tspace = builder.tspace;
+        this.labelWidth = builder.labelWidth;
+        this.forkJoinPool = builder.forkJoinPool;
+        this.forkDepth = builder.forkDepth;
+        this.layoutCacheSize = builder.layoutCacheSize;
+        this.layoutCache = layoutCacheSize > 0 ? new LayoutCache(layoutCacheSize) : null;
+        this.labelCacheSize = builder.labelCacheSize;
+        this.labelKey = builder.labelKey;
+        this.labelCache = labelCacheSize > 0 ? new LabelCache<>(labelCacheSize, labelKey, labelWidth) : null;
+        this.maxDepth = builder.maxDepth;
+        this.maxNodes = builder.maxNodes;
+        this.maxWidth = builder.maxWidth;
+        this.elisionLabel = builder.elisionLabel;
+        this.renderListener = builder.renderListener;
+        this.collapseRepeats = builder.collapseRepeats;
+        this.rowPacking = builder.rowPacking;
     }
 
-    public void setSquareBranches(boolean squareBranches) { this.squareBranches = squareBranches; }
+    public static <T> Builder<T> builder(Function<T, String> getLabel, Function<T, T> getLeft,
+                                         Function<T, T> getRight) {
+        return new Builder<>(getLabel, getLeft, getRight);
+    }
+
+    /*
+        Builder for a printer of trees whose nodes have any number of children, given in order by getChildren (null
+        entries are skipped).  Such trees are always drawn with square branches, with the subtrees of a node packed
+        as close together as their contours allow, as for binary trees, and an only child straight below its
+        parent, so squareBranches and lrAgnostic are ignored.  They're laid out sequentially, and aren't cached or
+        collapsed: build throws IllegalStateException if forkJoinPool, layoutCacheSize or collapseRepeats is set.
+     */
+    public static <T> Builder<T> naryBuilder(Function<T, String> getLabel, Function<T, List<T>> getChildren) {
+        return new Builder<>(getLabel, null, null, getChildren);
+    }
+
+    /*
+        Builder for a printer that's only used to print IndexedTrees, which don't need the functions to get the
+        label and children of a node.
+     */
+    public static <T> Builder<T> builder() {
+        return new Builder<>(null, null, null);
+    }
+
+    // builder starting from the settings of this printer, e.g. to build a variant of it; the caches aren't shared
+    public Builder<T> toBuilder() {
+        return new Builder<>(this);
+    }
 
-    public void setLrAgnostic(boolean lrAgnostic) { this.lrAgnostic = lrAgnostic; }
+    public void clearLayoutCache() {
+        if (layoutCache != null) layoutCache.clear();
+    }
 
-    public void setHspace(int hspace) { this.hspace = hspace; }
+    public void clearLabelCache() {
+        if (labelCache != null) labelCache.clear();
+    }
 
-    public void setTspace(int tspace) { this.hspace = tspace; }
+    /*
+        Tells the printer that node has changed since it was last printed: its label, or which nodes are its
+        children.  The cached layouts of node and of the nodes above it are dropped, and the rest are kept, so after
+        a small change to a large tree (e.g. an insertion or a rotation, reporting each node whose children changed)
+        only the paths from the changed nodes up to the root are laid out again when it's next printed.  For this to
+        pay off, the layout cache should be large enough to hold the whole tree.  The cached label of node is
+        dropped too.
+     */
+    public void nodeChanged(T node) {
+        if (layoutCache != null) layoutCache.remove(node);
+        if (labelCache != null) labelCache.remove(node);
+    }
 
     /*
         Prints ascii representation of binary tree.
@@ -44,8 +152,273 @@ public class TreePrinter<T> {
         drawing characters.
      */
     public void printTree(T root) {
-        List<TreeLine> treeLines = buildTreeLines(root);
-        printTreeLines(treeLines);
+        printTree(root, outStream);
+    }
+
+    /*
+        Prints ascii representation of binary tree to the given Appendable (e.g. a Writer or StringBuilder)
+        rather than the print stream.  Lines are assembled in a buffer that is reused from line to line, and
+        written to Writers and StringBuilders without creating a String per line.  Any number of threads may
+        print with the same printer at once, to different outputs.
+     */
+    public void printTree(T root, Appendable out) {
+        printTree(root, out, null);
+    }
+
+    /*
+        As printTree(root, out), checking the given deadline (see RenderDeadline) as the tree is laid out and
+        printed, and throwing CancellationException or truncating the output once it has passed.  If it passes
+        while the tree is laid out, the tree is printed with the subtrees not yet laid out as placeholders; if it
+        passes while lines are written, the rest of the lines are left out.
+     */
+    public void printTree(T root, Appendable out, RenderDeadline deadline) {
+        try (RenderState state = startRender(deadline)) {
+            printDrawing(draw(layOut(root, state), state), out, state);
+            finishRender(state, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+        Prints ascii representation of binary tree to the given channel (e.g. a FileChannel), encoded as UTF-8.
+        The output is encoded into a buffer that's written to the channel when full, so even a very large tree
+        takes only a few writes.
+     */
+    public void printTree(T root, WritableByteChannel out) {
+        ChannelWriter writer = new ChannelWriter(out, StandardCharsets.UTF_8);
+        printTree(root, writer);
+        flush(writer);
+    }
+
+    /*
+        Lays out and draws binary tree without printing it, so that it can be printed later, any number of times,
+        or stored (see RenderedTree) and printed by another process.
+     */
+    public RenderedTree render(T root) {
+        return render(root, null);
+    }
+
+    /*
+        As render(root), checking the given deadline as the tree is laid out.  If the rendering is truncated, the
+        subtrees left out are drawn as placeholders, but unlike printTree no line is added saying it was stopped.
+     */
+    public RenderedTree render(T root, RenderDeadline deadline) {
+        RenderState state = startDrawing(deadline);
+        TreeDrawing drawing = draw(layOut(root, state), state);
+        if (state.timed) renderListener.rendered(state.metrics());
+        return new RenderedTree(drawing);
+    }
+
+    /*
+        Renders binary tree on the given executor, e.g. so that rendering a large tree doesn't hold up a request
+        thread, leaving just the printing of the result to the caller.  Cancelling the returned future cancels the
+        deadline, so that the rendering stops at its next check.
+     */
+    public CompletableFuture<RenderedTree> renderAsync(T root, Executor executor) {
+        return renderAsync(root, RenderDeadline.cancellable(), executor);
+    }
+
+    public CompletableFuture<RenderedTree> renderAsync(T root, RenderDeadline deadline, Executor executor) {
+        CompletableFuture<RenderedTree> future = CompletableFuture.supplyAsync(() -> render(root, deadline), executor);
+        future.whenComplete((tree, e) -> {
+            if (future.isCancelled()) deadline.cancel();
+        });
+        return future;
+    }
+
+    /*
+        Prints ascii representation of binary tree given as an IndexedTree, e.g. an ArrayTree.  Nodes are read by
+        number, with no per node objects apart from the layout itself, and no boxing.  The tree is laid out
+        sequentially, even if a fork/join pool is set, and isn't cached.
+     */
+    public void printIndexed(IndexedTree tree) {
+        printIndexed(tree, outStream);
+    }
+
+    public void printIndexed(IndexedTree tree, Appendable out) {
+        try (RenderState state = startRender()) {
+            printDrawing(draw(layOut(tree, state), state), out, state);
+            finishRender(state, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public RenderedTree renderIndexed(IndexedTree tree) {
+        RenderState state = startDrawing(null);
+        TreeDrawing drawing = draw(layOut(tree, state), state);
+        if (state.timed) renderListener.rendered(state.metrics());
+        return new RenderedTree(drawing);
+    }
+
+    /*
+        Copies a binary tree into an ArrayTree, e.g. to print a tree that other threads are changing: the snapshot
+        is taken in a single pass (reading each node's label and children once, and nothing else) while the tree
+        is locked, and it's laid out and printed, with printIndexed or renderIndexed, after the lock is released.
+        Nodes shared within the tree (as in a DAG) are copied once, and printed wherever they occur.  Throws
+        IllegalStateException if the tree has a cycle, or more than maxSize nodes, rather than running on.  The
+        printer's elisionLabel doesn't apply to the snapshot, whose placeholders are labelled by
+        IndexedTree.elisionLabel.
+     */
+    public ArrayTree snapshot(T root) {
+        return snapshot(root, Integer.MAX_VALUE);
+    }
+
+    public ArrayTree snapshot(T root, int maxSize) {
+        if (getChildren != null) throw new IllegalStateException("snapshots are only taken of binary trees");
+        if (root == null) return new ArrayTree(IndexedTree.NONE, new int[0], new int[0], new int[0], new String[0]);
+
+        Map<T, Integer> copied = new IdentityHashMap<>();
+        int size = 0;
+        int[] left = new int[16];
+        int[] right = new int[16];
+        String[] labels = new String[16];
+        boolean[] done = new boolean[16];   // whether all of the node's subtree has been copied
+
+        // pre-order traversal, with the path from the root to the current node on the stack
+        Object[] pending = new Object[16];
+        int[] pendingIndex = new int[16];
+        int[] visitedSubtrees = new int[16];
+        int sp = 0;
+        pending[0] = root;
+        pendingIndex[0] = size++;
+        left[0] = right[0] = IndexedTree.NONE;
+        labels[0] = labelText(root);
+        copied.put(root, 0);
+        while (sp >= 0) {
+            @SuppressWarnings("unchecked") T node = (T) pending[sp];
+            int index = pendingIndex[sp];
+            if (visitedSubtrees[sp] == 2) {
+                done[index] = true;
+                sp--;
+                continue;
+            }
+            boolean isLeft = visitedSubtrees[sp]++ == 0;
+            T subtree = isLeft ? getLeft.apply(node) : getRight.apply(node);
+            if (subtree == null) continue;
+
+            Integer copy = copied.get(subtree);
+            int subtreeIndex;
+            if (copy != null) {
+                subtreeIndex = copy;
+                if (!done[subtreeIndex]) throw new IllegalStateException("tree has a cycle");
+            } else {
+                if (size == maxSize) throw new IllegalStateException("tree has more than " + maxSize + " nodes");
+                if (size == labels.length) {
+                    left = Arrays.copyOf(left, size * 2);
+                    right = Arrays.copyOf(right, size * 2);
+                    labels = Arrays.copyOf(labels, size * 2);
+                    done = Arrays.copyOf(done, size * 2);
+                }
+                subtreeIndex = size++;
+                left[subtreeIndex] = right[subtreeIndex] = IndexedTree.NONE;
+                labels[subtreeIndex] = labelText(subtree);
+                copied.put(subtree, subtreeIndex);
+
+                if (++sp == pending.length) {
+                    pending = Arrays.copyOf(pending, sp * 2);
+                    pendingIndex = Arrays.copyOf(pendingIndex, sp * 2);
+                    visitedSubtrees = Arrays.copyOf(visitedSubtrees, sp * 2);
+                }
+                pending[sp] = subtree;
+                pendingIndex[sp] = subtreeIndex;
+                visitedSubtrees[sp] = 0;
+            }
+            if (isLeft) left[index] = subtreeIndex;
+            else right[index] = subtreeIndex;
+        }
+
+        int[] labelId = new int[size];
+        for (int i = 0; i < size; i++) labelId[i] = i;
+        return new ArrayTree(0, Arrays.copyOf(left, size), Arrays.copyOf(right, size), labelId,
+                Arrays.copyOf(labels, size));
+    }
+
+    /*
+        Takes a snapshot of binary tree while holding the given lock (e.g. the read lock of a ReadWriteLock guarding
+        the tree), and prints it once the lock is released, so the tree is only locked for the snapshot.  With a
+        maxSize, the lock is released and IllegalStateException thrown as soon as the snapshot would take more than
+        maxSize nodes, as by snapshot(root, maxSize).
+     */
+    public void printSnapshot(T root, Lock lock, Appendable out) {
+        printSnapshot(root, lock, Integer.MAX_VALUE, out);
+    }
+
+    public void printSnapshot(T root, Lock lock, int maxSize, Appendable out) {
+        printIndexed(lockedSnapshot(root, lock, maxSize), out);
+    }
+
+    public RenderedTree renderSnapshot(T root, Lock lock) {
+        return renderSnapshot(root, lock, Integer.MAX_VALUE);
+    }
+
+    public RenderedTree renderSnapshot(T root, Lock lock, int maxSize) {
+        return renderIndexed(lockedSnapshot(root, lock, maxSize));
+    }
+
+    private ArrayTree lockedSnapshot(T root, Lock lock, int maxSize) {
+        lock.lock();
+        try {
+            return snapshot(root, maxSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+        Prints just the part of the ascii representation of binary tree that's within a window of the given height
+        and width, whose top left corner is at line top and column left of the full representation.  Subtrees
+        outside the window aren't drawn.  The tree is still laid out in full (within maxDepth and maxNodes), since
+        nodes outside the window affect where the nodes inside it go, but with the layout cache on, moving the
+        window around a large tree only costs drawing what's in it.
+     */
+    public void printViewport(T root, int top, int left, int height, int width, Appendable out) {
+        try (RenderState state = startRender()) {
+            Layout layout = layOut(root, state);
+            long start = state.timed ? System.nanoTime() : 0;
+            TreeDrawing drawing = TreeDrawing.of(layout, top, left, height, width, false);
+            if (state.timed) state.drawNanos.add(System.nanoTime() - start);
+            printDrawing(drawing, out, state);
+            finishRender(state, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+        Prints a tree too wide for the page as a series of pages, each a vertical strip of the full representation
+        pageWidth columns wide (including a column on each side for markers), headed by the page number and the
+        range of columns it covers.  Lines that continue on the previous or next page start with « or end
+        with ».  The tree is laid out once, and each strip is drawn from the layout when it's printed, so only
+        one strip is held in memory at a time.  maxWidth doesn't apply to pages.
+     */
+    public void printPages(T root, int pageWidth) {
+        printPages(root, pageWidth, outStream);
+    }
+
+    public void printPages(T root, int pageWidth, Appendable out) {
+        if (pageWidth < 3) throw new IllegalArgumentException("pageWidth must be at least 3, was " + pageWidth);
+        try (RenderState state = startRender()) {
+            Layout layout = layOut(root, state);
+            if (layout != null) {
+                int stripWidth = pageWidth - 2;
+                int width = layout.maxX - layout.minX + 1;
+                int pages = (width + stripWidth - 1) / stripWidth;
+                int[] leftEdges = layout.leftEdges();
+                int[] rightEdges = layout.rightEdges();
+                for (int page = 0; page < pages; page++) {
+                    int left = page * stripWidth;
+                    long start = state.timed ? System.nanoTime() : 0;
+                    TreeDrawing strip = TreeDrawing.of(layout, 0, left, layout.height, stripWidth, false);
+                    if (state.timed) state.drawNanos.add(System.nanoTime() - start);
+                    printPage(strip, page, pages, left, leftEdges, rightEdges, layout.minX, out, state);
+                }
+            }
+            finishRender(state, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /*
@@ -58,211 +431,1090 @@ public class TreePrinter<T> {
         drawing characters.
      */
     public void printTrees(List<T> trees, int lineWidth) {
-        List<List<TreeLine>> allTreeLines = new ArrayList<>();
-        int[] treeWidths = new int[trees.size()];
-        int[] minLeftOffsets = new int[trees.size()];
-        int[] maxRightOffsets = new int[trees.size()];
-        for (int i = 0; i < trees.size(); i++) {
-            T treeNode = trees.get(i);
-            List<TreeLine> treeLines = buildTreeLines(treeNode);
-            allTreeLines.add(treeLines);
-            minLeftOffsets[i] = minLeftOffset(treeLines);
-            maxRightOffsets[i] = maxRightOffset(treeLines);
-            treeWidths[i] = maxRightOffsets[i] - minLeftOffsets[i] + 1;
-        }
-
-        int nextTreeIndex = 0;
-        while (nextTreeIndex < trees.size()) {
-            // print a row of trees starting at nextTreeIndex
-
-            // first figure range of trees we can print for next row
-            int sumOfWidths = treeWidths[nextTreeIndex];
-            int endTreeIndex = nextTreeIndex + 1;
-            while (endTreeIndex < trees.size() && sumOfWidths + tspace + treeWidths[endTreeIndex] < lineWidth) {
-                sumOfWidths += (tspace + treeWidths[endTreeIndex]);
-                endTreeIndex++;
+        printTrees(trees, lineWidth, outStream);
+    }
+
+    /*
+        Prints ascii representations of multiple trees across page, to the given Appendable rather than
+        the print stream.
+     */
+    public void printTrees(List<T> trees, int lineWidth, Appendable out) {
+        try (RenderState state = startRender()) {
+            TreeDrawing[] drawings = drawAll(trees, state);
+            if (rowPacking != RowPacking.GREEDY) {
+                printShelves(drawings, lineWidth, out, state);
+                finishRender(state, out);
+                return;
             }
-            endTreeIndex--;
-
-            // find max number of lines for tallest tree
-            int maxLines = allTreeLines.stream().mapToInt(list -> list.size()).max().orElse(0);
-
-            // print trees line by line
-            for (int i = 0; i < maxLines; i++) {
-                for (int j = nextTreeIndex; j <= endTreeIndex; j++) {
-                    List<TreeLine> treeLines = allTreeLines.get(j);
-                    if (i >= treeLines.size()) {
-                        System.out.print(spaces(treeWidths[j]));
-                    } else {
-                        int leftSpaces = -(minLeftOffsets[j] - treeLines.get(i).leftOffset);
-                        int rightSpaces = maxRightOffsets[j] - treeLines.get(i).rightOffset;
-                        System.out.print(spaces(leftSpaces) + treeLines.get(i).line + spaces(rightSpaces));
-                    }
-                    if (j < endTreeIndex) System.out.print(spaces(tspace));
+
+            int nextTreeIndex = 0;
+            while (nextTreeIndex < drawings.length) {
+                // print a row of trees starting at nextTreeIndex
+
+                // first figure range of trees we can print for next row
+                int sumOfWidths = drawings[nextTreeIndex].width;
+                int endTreeIndex = nextTreeIndex + 1;
+                while (endTreeIndex < drawings.length && sumOfWidths + tspace + drawings[endTreeIndex].width < lineWidth) {
+                    sumOfWidths += (tspace + drawings[endTreeIndex].width);
+                    endTreeIndex++;
                 }
-                System.out.println();
+
+                printRow(Arrays.asList(drawings).subList(nextTreeIndex, endTreeIndex), out, state);
+                nextTreeIndex = endTreeIndex;
             }
+            finishRender(state, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-            for (int i = 0; i < tspace; i++) {
-                System.out.println();
+    /*
+        Prints trees in rows packed by RowPacking.SHELF or SHELF_KEEP_ORDER.  As in the greedy loop, a row must be
+        narrower than lineWidth, unless it holds a single tree.
+     */
+    private void printShelves(TreeDrawing[] drawings, int lineWidth, Appendable out, RenderState state)
+            throws IOException {
+        int n = drawings.length;
+
+        // trees from tallest to shortest, in the order given among trees of the same height
+        long[] byHeight = new long[n];
+        for (int i = 0; i < n; i++) {
+            byHeight[i] = ((long) (Integer.MAX_VALUE - drawings[i].height) << 32) | i;
+        }
+        Arrays.sort(byHeight);
+        int[] order = new int[n];
+        int[] widths = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = (int) byHeight[i];
+            widths[i] = drawings[i].width;
+        }
+        int[] shelf = ShelfPacking.pack(widths, order, lineWidth - 1, tspace);
+
+        // group the trees by shelf, in packing order or in the order given
+        int shelves = 0;
+        for (int s : shelf) shelves = Math.max(shelves, s + 1);
+        int[] shelfStart = new int[shelves + 1];
+        for (int s : shelf) shelfStart[s + 1]++;
+        for (int s = 0; s < shelves; s++) shelfStart[s + 1] += shelfStart[s];
+        int[] next = Arrays.copyOf(shelfStart, shelves);
+        TreeDrawing[] rows = new TreeDrawing[n];
+        for (int i = 0; i < n; i++) {
+            int tree = rowPacking == RowPacking.SHELF_KEEP_ORDER ? i : order[i];
+            rows[next[shelf[tree]]++] = drawings[tree];
+        }
+
+        List<TreeDrawing> rowList = Arrays.asList(rows);
+        for (int s = 0; s < shelves; s++) {
+            printRow(rowList.subList(shelfStart[s], shelfStart[s + 1]), out, state);
+        }
+    }
+
+    // prints ascii representations of multiple trees across page, to the given channel, encoded as UTF-8
+    public void printTrees(List<T> trees, int lineWidth, WritableByteChannel out) {
+        ChannelWriter writer = new ChannelWriter(out, StandardCharsets.UTF_8);
+        printTrees(trees, lineWidth, writer);
+        flush(writer);
+    }
+
+    /*
+        Prints ascii representations of trees across page, as they are taken from the iterator.  Only the trees
+        of the row being filled are kept; each row is printed (and the output flushed) as soon as the next tree
+        doesn't fit, so trees can come from an arbitrarily long, or lazily generated, sequence.
+     */
+    public void printTrees(Iterator<T> trees, int lineWidth) {
+        printTrees(trees, lineWidth, outStream);
+    }
+
+    public void printTrees(Iterator<T> trees, int lineWidth, Appendable out) {
+        try (RenderState state = startRender()) {
+            List<TreeDrawing> row = new ArrayList<>();
+            int sumOfWidths = 0;
+            while (trees.hasNext()) {
+                TreeDrawing drawing = draw(layOut(trees.next(), state), state);
+                if (!row.isEmpty() && sumOfWidths + tspace + drawing.width >= lineWidth) {
+                    printRow(row, out, state);
+                    state.lineBuffer.writeTo(out);
+                    if (out instanceof Flushable) ((Flushable) out).flush();
+                    row.clear();
+                }
+                sumOfWidths = row.isEmpty() ? drawing.width : sumOfWidths + tspace + drawing.width;
+                row.add(drawing);
             }
+            if (!row.isEmpty()) printRow(row, out, state);
+            finishRender(state, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void printTrees(Iterator<T> trees, int lineWidth, WritableByteChannel out) {
+        ChannelWriter writer = new ChannelWriter(out, StandardCharsets.UTF_8);
+        printTrees(trees, lineWidth, writer);
+        flush(writer);
+    }
+
+    public void printTrees(Stream<T> trees, int lineWidth) {
+        printTrees(trees.iterator(), lineWidth, outStream);
+    }
+
+    public void printTrees(Stream<T> trees, int lineWidth, Appendable out) {
+        printTrees(trees.iterator(), lineWidth, out);
+    }
 
-            nextTreeIndex = endTreeIndex + 1;
+    /*
+        Draws all the trees, in parallel if a fork/join pool has been set.  Each tree is a separate task, and
+        large trees are further split into tasks as in printTree.
+     */
+    private TreeDrawing[] drawAll(List<T> trees, RenderState state) {
+        List<T> treeList = trees instanceof RandomAccess ? trees : new ArrayList<>(trees);
+        TreeDrawing[] drawings = new TreeDrawing[treeList.size()];
+        if (forkJoinPool != null && drawings.length > 1) {
+            forkJoinPool.invoke(new DrawAllTask(treeList, drawings, 0, drawings.length, state));
+        } else {
+            for (int i = 0; i < drawings.length; i++) {
+                drawings[i] = draw(layOut(treeList.get(i), state), state);
+            }
         }
+        return drawings;
     }
 
-    private void printTreeLines(List<TreeLine> treeLines) {
-        if (treeLines.size() > 0) {
-            int minLeftOffset = minLeftOffset(treeLines);
-            int maxRightOffset = maxRightOffset(treeLines);
-            for (TreeLine treeLine : treeLines) {
-                int leftSpaces = -(minLeftOffset - treeLine.leftOffset);
-                int rightSpaces = maxRightOffset - treeLine.rightOffset;
-                outStream.println(spaces(leftSpaces) + treeLine.line + spaces(rightSpaces));
+    private TreeDrawing draw(Layout layout, RenderState state) {
+        long start = state.timed ? System.nanoTime() : 0;
+        TreeDrawing drawing;
+        if (layout == null || maxWidth == Integer.MAX_VALUE) drawing = TreeDrawing.of(layout);
+        else drawing = TreeDrawing.of(layout, 0, 0, layout.height, maxWidth, true);
+        if (state.timed) state.drawNanos.add(System.nanoTime() - start);
+        return drawing;
+    }
+
+    private void printDrawing(TreeDrawing drawing, Appendable out, RenderState state) throws IOException {
+        long start = state.timed ? System.nanoTime() : 0;
+        int lines = drawing.height;
+        if (state.deadline == null || state.stopped) {
+            // a drawing of a layout stopped at its deadline is printed in full, placeholders and all
+            drawing.writeLines(state.lineBuffer, out);
+        } else {
+            // as writeLines, checking the deadline, with a line of output counted as a node per 16 columns
+            LineBuffer lineBuffer = state.lineBuffer;
+            int lineWork = 1 + drawing.width / 16;
+            for (int i = 0; i < drawing.height; i++) {
+                if (state.pastDeadline(lineWork)) {
+                    lines = i;
+                    break;
+                }
+                drawing.writeLine(lineBuffer, i);
+                lineBuffer.appendLineSeparator();
+                lineBuffer.writeIfFull(out);
             }
         }
+        if (state.timed) state.wrote(start, lines, drawing.width);
+    }
+
+    /*
+        Prints one page of printPages: a header, then the lines of the strip starting at column left of the full
+        representation, marked where they continue to the left or right, followed by tspace blank lines between
+        pages.  The edges are the leftmost and rightmost offsets of each line, as given by the layout.
+     */
+    private void printPage(TreeDrawing strip, int page, int pages, int left, int[] leftEdges, int[] rightEdges,
+                           int minX, Appendable out, RenderState state) throws IOException {
+        LineBuffer lineBuffer = state.lineBuffer;
+        long start = state.timed ? System.nanoTime() : 0;
+
+        lineBuffer.append("page " + (page + 1) + " of " + pages + ", columns " + (left + 1) + "-"
+                + (left + strip.width));
+        lineBuffer.appendLineSeparator();
+        int right = left + strip.width;
+        for (int i = 0; i < strip.height; i++) {
+            lineBuffer.append(leftEdges[i] - minX < left ? '\u00AB' : ' ');
+            strip.writeLine(lineBuffer, i);
+            lineBuffer.append(rightEdges[i] - minX >= right ? '\u00BB' : ' ');
+            lineBuffer.appendLineSeparator();
+            lineBuffer.writeIfFull(out);
+        }
+
+        int blankLines = page < pages - 1 ? tspace : 0;
+        for (int i = 0; i < blankLines; i++) {
+            lineBuffer.appendLineSeparator();
+        }
+        lineBuffer.writeIfFull(out);
+        if (state.timed) state.wrote(start, 1 + strip.height + blankLines, strip.width + 2);
     }
 
-    private List<TreeLine> buildTreeLines(T root) {
-        if (root == null) return Collections.emptyList();
-        else {
-            String rootLabel = getLabel.apply(root);
-            List<TreeLine> leftTreeLines = buildTreeLines(getLeft.apply(root));
-            List<TreeLine> rightTreeLines = buildTreeLines(getRight.apply(root));
+    // prints a row of drawings side by side, followed by tspace blank lines
+    private void printRow(List<TreeDrawing> row, Appendable out, RenderState state) throws IOException {
+        LineBuffer lineBuffer = state.lineBuffer;
+        long start = state.timed ? System.nanoTime() : 0;
 
-            int leftCount = leftTreeLines.size();
-            int rightCount = rightTreeLines.size();
-            int minCount = Math.min(leftCount, rightCount);
-            int maxCount = Math.max(leftCount, rightCount);
+        // find max number of lines for tallest tree in the row
+        int maxLines = 0;
+        int rowWidth = -tspace;
+        for (TreeDrawing drawing : row) {
+            maxLines = Math.max(maxLines, drawing.height);
+            rowWidth += drawing.width + tspace;
+        }
 
-            // The left and right subtree print representations have jagged edges, and we essentially we have to
-            // figure out how close together we can bring the left and right roots so that the edges just meet on
-            // some line.  Then we add hspace, and round up to next odd number.
-            int maxRootSpacing = 0;
-            for (int i = 0; i < minCount; i++) {
-                int spacing = leftTreeLines.get(i).rightOffset - rightTreeLines.get(i).leftOffset;
-                if (spacing > maxRootSpacing) maxRootSpacing = spacing;
+        // print trees line by line
+        for (int i = 0; i < maxLines; i++) {
+            for (int j = 0; j < row.size(); j++) {
+                TreeDrawing drawing = row.get(j);
+                if (i >= drawing.height) {
+                    lineBuffer.append(' ', drawing.width);
+                } else {
+                    drawing.writeLine(lineBuffer, i);
+                }
+                if (j < row.size() - 1) lineBuffer.append(' ', tspace);
             }
-            int rootSpacing = maxRootSpacing + hspace;
-            if (rootSpacing % 2 == 0) rootSpacing++;
-            // rootSpacing is now the number of spaces between the roots of the two subtrees
-
-            List<TreeLine> allTreeLines = new ArrayList<>();
-
-            // strip ANSI escape codes to get length of rendered string. Fixes wrong padding when labels use ANSI escapes for colored nodes.
-            String renderedRootLabel = rootLabel.replaceAll("\\e\\[[\\d;]*[^\\d;]", "");
-
-            // add the root and the two branches leading to the subtrees
-
-            allTreeLines.add(new TreeLine(rootLabel, -(renderedRootLabel.length() - 1) / 2, renderedRootLabel.length() / 2));
-
-            // also calculate offset adjustments for left and right subtrees
-            int leftTreeAdjust = 0;
-            int rightTreeAdjust = 0;
-
-            if (leftTreeLines.isEmpty()) {
-                if (!rightTreeLines.isEmpty()) {
-                    // there's a right subtree only
-                    if (squareBranches) {
-                        if (lrAgnostic) {
-                            allTreeLines.add(new TreeLine("\u2502", 0, 0));
-                        } else {
-                            allTreeLines.add(new TreeLine("\u2514\u2510", 0, 1));
-                            rightTreeAdjust = 1;
-                        }
-                    } else {
-                        allTreeLines.add(new TreeLine("\\", 1, 1));
-                        rightTreeAdjust = 2;
+            lineBuffer.appendLineSeparator();
+            lineBuffer.writeIfFull(out);
+        }
+
+        for (int i = 0; i < tspace; i++) {
+            lineBuffer.appendLineSeparator();
+        }
+        lineBuffer.writeIfFull(out);
+        if (state.timed) state.wrote(start, maxLines + tspace, rowWidth);
+    }
+
+    private static void flush(ChannelWriter writer) {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private RenderState startRender() {
+        return startRender(null);
+    }
+
+    // state of a call that prints, holding a line buffer until it's closed
+    private RenderState startRender(RenderDeadline deadline) {
+        return new RenderState(renderListener != RenderListener.NONE, deadline, LineBuffer.acquire());
+    }
+
+    // state of a call that only lays out and draws trees
+    private RenderState startDrawing(RenderDeadline deadline) {
+        return new RenderState(renderListener != RenderListener.NONE, deadline, null);
+    }
+
+    /*
+        Writes out what's left in the line buffer, and reports the metrics of the call.  If the rendering was
+        truncated at its deadline, a line saying so is added at the end.
+     */
+    private void finishRender(RenderState state, Appendable out) throws IOException {
+        long start = state.timed ? System.nanoTime() : 0;
+        if (state.stopped) {
+            state.lineBuffer.append("[" + state.deadline.reason() + ", output truncated]");
+            state.lineBuffer.appendLineSeparator();
+        }
+        state.lineBuffer.writeTo(out);
+        if (state.timed) {
+            state.wrote(start, 0, 0);
+            renderListener.rendered(state.metrics());
+        }
+    }
+
+    // lays out a tree, recording its layout time and size
+    private Layout layOut(T root, RenderState state) {
+        if (!state.timed) return buildLayout(root, state);
+        long start = System.nanoTime();
+        Layout layout = buildLayout(root, state);
+        state.laidOut(start, layout);
+        return layout;
+    }
+
+    private Layout layOut(IndexedTree tree, RenderState state) {
+        if (!state.timed) return buildIndexedLayout(tree, state);
+        long start = System.nanoTime();
+        Layout layout = buildIndexedLayout(tree, state);
+        state.laidOut(start, layout);
+        return layout;
+    }
+
+    private Layout buildLayout(T root, RenderState state) {
+        if (root == null) return null;
+        if (getChildren != null) return buildNaryLayout(root, state);
+        if (collapseRepeats) return buildCollapsedLayout(root, state);
+        int depthLimit = depthLimit(root, state);
+        if (forkJoinPool == null) return buildLayoutSequentially(root, 0, depthLimit, state);
+        LayoutTask task = new LayoutTask(root, 0, depthLimit, state);
+        try {
+            return ForkJoinTask.getPool() == forkJoinPool ? task.compute() : forkJoinPool.invoke(task);
+        } catch (CancellationException e) {
+            // joining a task that threw CancellationException throws a new one, without the message
+            if (state.deadline == null) throw e;
+            throw new CancellationException(state.deadline.reason());
+        }
+    }
+
+    /*
+        Returns the depth at which subtrees are replaced by placeholders: maxDepth, or less if needed to keep within
+        maxNodes.  Levels are counted breadth first, stopping as soon as maxNodes is exceeded, so at most about
+        maxNodes nodes are visited.
+     */
+    private int depthLimit(T root, RenderState state) {
+        if (maxNodes == Integer.MAX_VALUE) return maxDepth;
+        List<T> level = Collections.singletonList(root);
+        int count = 0;
+        for (int depth = 0; depth < maxDepth; depth++) {
+            if (level.isEmpty()) break;
+            count += level.size();
+            if (count > maxNodes) return depth;
+            List<T> nextLevel = new ArrayList<>();
+            for (T node : level) {
+                if (getChildren != null) {
+                    for (T child : children(node, state)) {
+                        if (child != null) nextLevel.add(child);
                     }
+                } else {
+                    T left = left(node, state);
+                    T right = right(node, state);
+                    if (left != null) nextLevel.add(left);
+                    if (right != null) nextLevel.add(right);
                 }
-            } else if (rightTreeLines.isEmpty()) {
-                // there's a left subtree only
-                if (squareBranches) {
-                    if (lrAgnostic) {
-                        allTreeLines.add(new TreeLine("\u2502", 0, 0));
-                    } else {
-                        allTreeLines.add(new TreeLine("\u250C\u2518", -1, 0));
-                        leftTreeAdjust = -1;
-                    }
+                if (count + nextLevel.size() > maxNodes) return depth + 1;
+            }
+            level = nextLevel;
+        }
+        return maxDepth;
+    }
+
+    private Layout buildLayoutSequentially(T root, int depth, int depthLimit, RenderState state) {
+        if (depth >= depthLimit) return elided(root, state);
+        Layout cached = cachedLayout(root, depthLimit);
+        if (cached != null) return cached;
+
+        // Post-order traversal using an explicit stack rather than recursion, so that very deep (e.g. degenerate)
+        // trees don't overflow the call stack.  The layouts of finished subtrees are pushed on the results stack,
+        // and a node is laid out once both of its subtrees are done.
+        Deque<PendingNode<T>> pending = new ArrayDeque<>();
+        List<Layout> results = new ArrayList<>();
+        pending.push(labelled(new PendingNode<>(root, depth), state));
+        while (!pending.isEmpty()) {
+            PendingNode<T> top = pending.peek();
+            if (top.visitedSubtrees < 2) {
+                T subtree;
+                if (top.visitedSubtrees++ == 0) subtree = top.left = left(top.node, state);
+                else subtree = top.right = right(top.node, state);
+                if (subtree == null) {
+                    results.add(null);
+                } else if (top.depth + 1 >= depthLimit || state.pastDeadline(1)) {
+                    results.add(elided(subtree, state));
                 } else {
-                    allTreeLines.add(new TreeLine("/", -1, -1));
-                    leftTreeAdjust = -2;
+                    Layout cachedSubtree = cachedLayout(subtree, depthLimit);
+                    if (cachedSubtree != null) results.add(cachedSubtree);
+                    else pending.push(labelled(new PendingNode<>(subtree, top.depth + 1), state));
                 }
             } else {
-                // there's a left and right subtree
-                if (squareBranches) {
-                    int adjust = (rootSpacing / 2) + 1;
-                    String horizontal = String.join("", Collections.nCopies(rootSpacing / 2, "\u2500"));
-                    String branch = "\u250C" + horizontal + "\u2534" + horizontal + "\u2510";
-                    allTreeLines.add(new TreeLine(branch, -adjust, adjust));
-                    rightTreeAdjust = adjust;
-                    leftTreeAdjust = -adjust;
+                pending.pop();
+                Layout right = results.remove(results.size() - 1);
+                Layout left = results.remove(results.size() - 1);
+                results.add(layoutNode(top.node, top.label, top.labelWidth, top.left, top.right, left, right,
+                        depthLimit, state));
+            }
+        }
+        return results.get(0);
+    }
+
+    /*
+        Lays out a tree with any number of children per node, in the same way as buildLayoutSequentially, joining
+        the layouts of the children of a node once they're all done.
+     */
+    private Layout buildNaryLayout(T root, RenderState state) {
+        int depthLimit = depthLimit(root, state);
+        if (depthLimit <= 0) return elided(root, state);
+
+        Deque<PendingNaryNode<T>> pending = new ArrayDeque<>();
+        List<Layout> results = new ArrayList<>();
+        pending.push(labelled(new PendingNaryNode<>(root, children(root, state), 0), state));
+        while (!pending.isEmpty()) {
+            PendingNaryNode<T> top = pending.peek();
+            if (top.visitedSubtrees < top.children.size()) {
+                T subtree = top.children.get(top.visitedSubtrees++);
+                if (subtree == null) {
+                    results.add(null);
+                } else if (top.depth + 1 >= depthLimit || state.pastDeadline(1)) {
+                    results.add(elided(subtree, state));
                 } else {
-                    if (rootSpacing == 1) {
-                        allTreeLines.add(new TreeLine("/ \\", -1, 1));
-                        rightTreeAdjust = 2;
-                        leftTreeAdjust = -2;
-                    } else {
-                        for (int i = 1; i < rootSpacing; i += 2) {
-                            String branches = "/" + spaces(i) + "\\";
-                            allTreeLines.add(new TreeLine(branches, -((i + 1) / 2), (i + 1) / 2));
-                        }
-                        rightTreeAdjust = (rootSpacing / 2) + 1;
-                        leftTreeAdjust = -((rootSpacing / 2) + 1);
+                    pending.push(labelled(new PendingNaryNode<>(subtree, children(subtree, state), top.depth + 1),
+                            state));
+                }
+            } else {
+                pending.pop();
+                List<Layout> subtrees = results.subList(results.size() - top.children.size(), results.size());
+                Layout layout = layoutNaryNode(top.label, top.labelWidth, subtrees);
+                subtrees.clear();
+                results.add(layout);
+            }
+        }
+        return results.get(0);
+    }
+
+    private Layout layoutNaryNode(String label, int labelWidth, List<Layout> subtrees) {
+        int count = 0;
+        for (Layout subtree : subtrees) {
+            if (subtree != null) count++;
+        }
+        Layout[] children = new Layout[count];
+        count = 0;
+        for (Layout subtree : subtrees) {
+            if (subtree != null) children[count++] = subtree;
+        }
+        switch (children.length) {
+            case 0:  return Layout.join(label, labelWidth, null, null, hspace, true, true);
+            case 1:  return Layout.join(label, labelWidth, children[0], null, hspace, true, true);
+            case 2:  return Layout.join(label, labelWidth, children[0], children[1], hspace, true, true);
+            default: return Layout.joinAll(label, labelWidth, children, hspace);
+        }
+    }
+
+    /*
+        Lays out an IndexedTree, in the same way as buildLayoutSequentially, but keeping the pending nodes in int
+        arrays.  The stack of pending nodes is the path from the root to the current node, so a node's depth is
+        its position on the stack.
+     */
+    private Layout buildIndexedLayout(IndexedTree tree, RenderState state) {
+        int root = tree.root();
+        if (root == IndexedTree.NONE) return null;
+        int depthLimit = indexedDepthLimit(tree, root, state);
+        if (depthLimit <= 0) return elided(tree, root, state);
+
+        int[] pending = new int[16];
+        int[] visitedSubtrees = new int[16];
+        Layout[] results = new Layout[16];
+        int sp = 0;
+        int resultCount = 0;
+        pending[0] = root;
+        visitedSubtrees[0] = 0;
+        while (sp >= 0) {
+            int node = pending[sp];
+            if (visitedSubtrees[sp] < 2) {
+                int subtree = visitedSubtrees[sp]++ == 0 ? left(tree, node, state) : right(tree, node, state);
+                if (subtree == IndexedTree.NONE || sp + 1 >= depthLimit || state.pastDeadline(1)) {
+                    if (resultCount == results.length) results = Arrays.copyOf(results, resultCount * 2);
+                    results[resultCount++] = subtree == IndexedTree.NONE ? null : elided(tree, subtree, state);
+                } else {
+                    if (++sp == pending.length) {
+                        pending = Arrays.copyOf(pending, sp * 2);
+                        visitedSubtrees = Arrays.copyOf(visitedSubtrees, sp * 2);
                     }
+                    pending[sp] = subtree;
+                    visitedSubtrees[sp] = 0;
                 }
+            } else {
+                sp--;
+                Layout right = results[--resultCount];
+                Layout left = results[--resultCount];
+                String label = label(tree, node, state);
+                results[resultCount++] = Layout.join(label, labelWidth.width(label), left, right, hspace,
+                        squareBranches, lrAgnostic);
+            }
+        }
+        return results[0];
+    }
+
+    // as depthLimit, for an IndexedTree
+    private int indexedDepthLimit(IndexedTree tree, int root, RenderState state) {
+        if (maxNodes == Integer.MAX_VALUE) return maxDepth;
+        int[] level = {root};
+        int levelSize = 1;
+        int count = 0;
+        for (int depth = 0; depth < maxDepth; depth++) {
+            if (levelSize == 0) break;
+            count += levelSize;
+            if (count > maxNodes) return depth;
+            int[] nextLevel = new int[2 * levelSize];
+            int nextLevelSize = 0;
+            for (int i = 0; i < levelSize; i++) {
+                int left = left(tree, level[i], state);
+                int right = right(tree, level[i], state);
+                if (left != IndexedTree.NONE) nextLevel[nextLevelSize++] = left;
+                if (right != IndexedTree.NONE) nextLevel[nextLevelSize++] = right;
+                if (count + nextLevelSize > maxNodes) return depth + 1;
             }
+            level = nextLevel;
+            levelSize = nextLevelSize;
+        }
+        return maxDepth;
+    }
 
-            // now add joined lines of subtrees, with appropriate number of separating spaces, and adjusting offsets
-
-            for (int i = 0; i < maxCount; i++) {
-                TreeLine leftLine, rightLine;
-                if (i >= leftTreeLines.size()) {
-                    // nothing remaining on left subtree
-                    rightLine = rightTreeLines.get(i);
-                    rightLine.leftOffset += rightTreeAdjust;
-                    rightLine.rightOffset += rightTreeAdjust;
-                    allTreeLines.add(rightLine);
-                } else if (i >= rightTreeLines.size()) {
-                    // nothing remaining on right subtree
-                    leftLine = leftTreeLines.get(i);
-                    leftLine.leftOffset += leftTreeAdjust;
-                    leftLine.rightOffset += leftTreeAdjust;
-                    allTreeLines.add(leftLine);
+    /*
+        Lays out a tree with repeated subtrees collapsed (see Builder.collapseRepeats).  The tree is read bottom up
+        into a SubtreeTable, remembering the shape of each node object so that shared nodes are only read once, and
+        the collapsed tree is then laid out as an IndexedTree.
+     */
+    private Layout buildCollapsedLayout(T root, RenderState state) {
+        SubtreeTable table = new SubtreeTable();
+        List<T> representatives = new ArrayList<>();        // a node of each shape, for elision labels
+        Map<T, Integer> shapes = new IdentityHashMap<>();
+        Deque<PendingNode<T>> pending = new ArrayDeque<>();
+        int[] results = new int[16];
+        int resultCount = 0;
+        pending.push(labelled(new PendingNode<>(root, 0), state));
+        while (!pending.isEmpty()) {
+            PendingNode<T> top = pending.peek();
+            if (top.visitedSubtrees < 2) {
+                T subtree = top.visitedSubtrees++ == 0 ? left(top.node, state) : right(top.node, state);
+                Integer shape = subtree == null ? Integer.valueOf(IndexedTree.NONE) : shapes.get(subtree);
+                if (shape == null && state.pastDeadline(1)) {
+                    // a placeholder, as a single node labelled as such
+                    shape = table.shape(elisionLabel.apply(subtree), IndexedTree.NONE, IndexedTree.NONE);
+                    if (shape == representatives.size()) representatives.add(subtree);
+                }
+                if (shape == null) {
+                    pending.push(labelled(new PendingNode<>(subtree, top.depth + 1), state));
                 } else {
-                    leftLine = leftTreeLines.get(i);
-                    rightLine = rightTreeLines.get(i);
-                    int adjustedRootSpacing = (rootSpacing == 1 ? (squareBranches ? 1 : 3) : rootSpacing);
-                    TreeLine combined = new TreeLine(leftLine.line + spaces(adjustedRootSpacing - leftLine.rightOffset + rightLine.leftOffset) + rightLine.line,
-                            leftLine.leftOffset + leftTreeAdjust, rightLine.rightOffset + rightTreeAdjust);
-                    allTreeLines.add(combined);
+                    if (resultCount == results.length) results = Arrays.copyOf(results, resultCount * 2);
+                    results[resultCount++] = shape;
                 }
+            } else {
+                pending.pop();
+                int right = results[--resultCount];
+                int left = results[--resultCount];
+                int shape = table.shape(top.label, left, right);
+                if (shape == representatives.size()) representatives.add(top.node);
+                shapes.put(top.node, shape);
+                results[resultCount++] = shape;
             }
-            return allTreeLines;
         }
+        IndexedTree collapsed = table.collapse(results[0], shape -> elisionLabel.apply(representatives.get(shape)));
+        return buildIndexedLayout(collapsed, state);
+    }
+
+    /*
+        Layouts are only cached for trees printed in full, i.e. without a depth limit, and not once the rendering
+        has been stopped at its deadline, as subtrees may have been left out.
+     */
+    private Layout cachedLayout(T node, int depthLimit) {
+        return layoutCache == null || depthLimit != Integer.MAX_VALUE ? null : layoutCache.get(node);
+    }
+
+    private Layout layoutNode(T node, String label, int labelWidth, T leftNode, T rightNode, Layout left,
+                              Layout right, int depthLimit, RenderState state) {
+        Layout layout = Layout.join(label, labelWidth, left, right, hspace, squareBranches, lrAgnostic);
+        if (layoutCache != null && depthLimit == Integer.MAX_VALUE && !state.stopped) {
+            layoutCache.put(node, leftNode, rightNode, layout);
+        }
+        return layout;
+    }
+
+    // placeholder for a subtree that isn't printed
+    private Layout elided(T node, RenderState state) {
+        boolean sampled = state.sampleLabel();
+        long start = sampled ? System.nanoTime() : 0;
+        String label = elisionLabel.apply(node);
+        if (sampled) state.labelSampled(start);
+        return Layout.join(label, labelWidth.width(label), null, null, hspace, squareBranches, lrAgnostic);
+    }
+
+    private Layout elided(IndexedTree tree, int node, RenderState state) {
+        boolean sampled = state.sampleLabel();
+        long start = sampled ? System.nanoTime() : 0;
+        String label = tree.elisionLabel(node);
+        if (sampled) state.labelSampled(start);
+        return Layout.join(label, labelWidth.width(label), null, null, hspace, squareBranches, lrAgnostic);
+    }
+
+    // label of a node, from the label cache if there is one, without measuring it
+    private String labelText(T node) {
+        return labelCache == null ? getLabel.apply(node) : labelCache.label(node, getLabel).text;
+    }
+
+    // node accessors, a sample of whose calls are timed when a render listener is set
+
+    // sets the label of a pending node and its width, from the label cache if there is one
+    private <P extends LabelledNode<T>> P labelled(P pending, RenderState state) {
+        boolean sampled = state.sampleLabel();
+        long start = sampled ? System.nanoTime() : 0;
+        if (labelCache != null) {
+            LabelCache.Label label = labelCache.label(pending.node, getLabel);
+            pending.label = label.text;
+            pending.labelWidth = label.width;
+        } else {
+            pending.label = getLabel.apply(pending.node);
+            pending.labelWidth = labelWidth.width(pending.label);
+        }
+        if (sampled) state.labelSampled(start);
+        return pending;
+    }
+
+    private T left(T node, RenderState state) {
+        if (!state.sampleLabel()) return getLeft.apply(node);
+        long start = System.nanoTime();
+        T left = getLeft.apply(node);
+        state.labelSampled(start);
+        return left;
     }
 
-    private static int minLeftOffset(List<TreeLine> treeLines) {
-        return treeLines.stream().mapToInt(l -> l.leftOffset).min().orElse(0);
+    private T right(T node, RenderState state) {
+        if (!state.sampleLabel()) return getRight.apply(node);
+        long start = System.nanoTime();
+        T right = getRight.apply(node);
+        state.labelSampled(start);
+        return right;
     }
 
-    private static int maxRightOffset(List<TreeLine> treeLines) {
-        return treeLines.stream().mapToInt(l -> l.rightOffset).max().orElse(0);
+    private List<T> children(T node, RenderState state) {
+        if (!state.sampleLabel()) return getChildren.apply(node);
+        long start = System.nanoTime();
+        List<T> children = getChildren.apply(node);
+        state.labelSampled(start);
+        return children;
     }
 
-    private static String spaces(int n) {
-        return String.join("", Collections.nCopies(n, " "));
+    private String label(IndexedTree tree, int node, RenderState state) {
+        if (!state.sampleLabel()) return tree.label(node);
+        long start = System.nanoTime();
+        String label = tree.label(node);
+        state.labelSampled(start);
+        return label;
+    }
+
+    private int left(IndexedTree tree, int node, RenderState state) {
+        if (!state.sampleLabel()) return tree.left(node);
+        long start = System.nanoTime();
+        int left = tree.left(node);
+        state.labelSampled(start);
+        return left;
+    }
+
+    private int right(IndexedTree tree, int node, RenderState state) {
+        if (!state.sampleLabel()) return tree.right(node);
+        long start = System.nanoTime();
+        int right = tree.right(node);
+        state.labelSampled(start);
+        return right;
+    }
+
+    /*
+        Settings for a TreePrinter.  A builder can be used to build any number of printers, and isn't affected by
+        changes made to it after build.
+     */
+    public static final class Builder<T> {
+        private final Function<T, String> getLabel;
+        private final Function<T, T> getLeft;
+        private final Function<T, T> getRight;
+        private final Function<T, List<T>> getChildren;
+        private PrintStream outStream = System.out;
+        private boolean squareBranches = false;
+        private boolean lrAgnostic = false;
+        private int hspace = 2;
+        private int tspace = 1;
+        private LabelWidth labelWidth = LabelWidth.ANSI;
+        private ForkJoinPool forkJoinPool = null;
+        private int forkDepth = 8;
+        private int layoutCacheSize = 0;
+        private int labelCacheSize = 0;
+        private Function<T, ?> labelKey = null;
+        private int maxDepth = Integer.MAX_VALUE;
+        private int maxNodes = Integer.MAX_VALUE;
+        private int maxWidth = Integer.MAX_VALUE;
+        private Function<T, String> elisionLabel = n -> "\u2026";
+        private RenderListener renderListener = RenderListener.NONE;
+        private boolean collapseRepeats = false;
+        private RowPacking rowPacking = RowPacking.GREEDY;
+
+        private Builder(Function<T, String> getLabel, Function<T, T> getLeft, Function<T, T> getRight) {
+            this(getLabel, getLeft, getRight, null);
+        }
+
+        private Builder(Function<T, String> getLabel, Function<T, T> getLeft, Function<T, T> getRight,
+                        Function<T, List<T>> getChildren) {
+            this.getLabel = getLabel;
+            this.getLeft = getLeft;
+            this.getRight = getRight;
+            this.getChildren = getChildren;
+        }
+
+        private Builder(TreePrinter<T> printer) {
+            this(printer.getLabel, printer.getLeft, printer.getRight, printer.getChildren);
+            outStream = printer.outStream;
+            squareBranches = printer.squareBranches;
+            lrAgnostic = printer.lrAgnostic;
+            hspace = printer.hspace;
+            tspace = printer.tspace;
+            labelWidth = printer.labelWidth;
+            forkJoinPool = printer.forkJoinPool;
+            forkDepth = printer.forkDepth;
+            layoutCacheSize = printer.layoutCacheSize;
+            labelCacheSize = printer.labelCacheSize;
+            labelKey = printer.labelKey;
+            maxDepth = printer.maxDepth;
+            maxNodes = printer.maxNodes;
+            maxWidth = printer.maxWidth;
+            elisionLabel = printer.elisionLabel;
+            renderListener = printer.renderListener;
+            collapseRepeats = printer.collapseRepeats;
+            rowPacking = printer.rowPacking;
+        }
+
+        public TreePrinter<T> build() {
+            if (getChildren != null && (forkJoinPool != null || layoutCacheSize > 0 || collapseRepeats)) {
+                throw new IllegalStateException(
+                        "trees with any number of children aren't laid out in parallel, cached or collapsed");
+            }
+            return new TreePrinter<>(this);
+        }
+
+        // where printTree(root) and printTrees(trees, lineWidth) print to (System.out by default)
+        public Builder<T> printStream(PrintStream outStream) {
+            this.outStream = outStream;
+            return this;
+        }
+
+        // draw branches with box drawing characters rather than slashes
+        public Builder<T> squareBranches(boolean squareBranches) {
+            this.squareBranches = squareBranches;
+            return this;
+        }
+
+        // draw a node's only subtree straight below it, whether it's a left or a right subtree (square branches only)
+        public Builder<T> lrAgnostic(boolean lrAgnostic) {
+            this.lrAgnostic = lrAgnostic;
+            return this;
+        }
+
+        // minimum number of spaces between adjacent node labels
+        public Builder<T> hspace(int hspace) {
+            this.hspace = hspace;
+            return this;
+        }
+
+        // number of spaces between trees printed across the page, and of blank lines between rows of them
+        public Builder<T> tspace(int tspace) {
+            this.tspace = tspace;
+            return this;
+        }
+
+        /*
+            Sets how the printed width of node labels is measured: LabelWidth.ANSI (the default) ignores ANSI escape
+            sequences, such as color codes, LabelWidth.DISPLAY also accounts for wide and zero width characters, and
+            LabelWidth.LENGTH just counts chars.  Each label is measured once per layout.
+         */
+        public Builder<T> labelWidth(LabelWidth labelWidth) {
+            this.labelWidth = labelWidth;
+            return this;
+        }
+
+        /*
+            Lays out trees in parallel on the given pool, or sequentially if pool is null (the default).  Subtrees
+            whose roots are less than forkDepth levels below the root of the tree are laid out as separate fork/join
+            tasks; deeper subtrees are laid out sequentially within those tasks.  The getLabel, getLeft and getRight
+            functions must be safe to call from multiple threads.  Output is the same as when laying out
+            sequentially.
+         */
+        public Builder<T> forkJoinPool(ForkJoinPool pool) {
+            this.forkJoinPool = pool;
+            return this;
+        }
+
+        public Builder<T> forkDepth(int forkDepth) {
+            this.forkDepth = forkDepth;
+            return this;
+        }
+
+        /*
+            Keeps the layouts of up to size subtrees, keyed by the identity of their root nodes, and reuses them
+            when the same node objects are printed again, whether within one tree (subtrees shared in a DAG) or in
+            later calls to printTree or printTrees.  A size of 0 (the default) turns caching off.  After modifying a
+            tree that has been printed, either report the changed nodes with nodeChanged, or call clearLayoutCache.
+            Each printer built gets a cache of its own.
+         */
+        public Builder<T> layoutCacheSize(int size) {
+            this.layoutCacheSize = size;
+            return this;
+        }
+
+        /*
+            Keeps the labels of up to size nodes, and reuses them in later calls to printTree, printTrees and the
+            like, so that printing the same tree again doesn't call getLabel, nor measure the labels again.  Equal
+            labels are interned, sharing one String and one measured width.  A size of 0 (the default) turns caching
+            off.  Labels are keyed by the identity of the node unless a labelKey is given; after changing a label,
+            report the node with nodeChanged, or call clearLabelCache.  Each printer built gets a cache of its own.
+         */
+        public Builder<T> labelCacheSize(int size) {
+            this.labelCacheSize = size;
+            return this;
+        }
+
+        /*
+            Keys cached labels by key.apply(node) rather than by the node itself, e.g. by the value held in a node,
+            so that nodes with equal keys share a label, and replacing a node with an equal one keeps its label.
+            Keys must be suitable as hash map keys, and getLabel must give equal labels for nodes with equal keys.
+         */
+        public Builder<T> labelKey(Function<T, ?> key) {
+            this.labelKey = key;
+            return this;
+        }
+
+        /*
+            Limits how much of a tree is printed, so that printing a huge tree by mistake doesn't walk all of it.
+            Nodes maxDepth levels below the root, and nodes beyond the first maxNodes in level order (whole levels
+            are kept or cut together), are printed as a single placeholder node standing for their whole subtree,
+            which isn't visited at all.  Lines wider than maxWidth are cut off and end with an ellipsis.  Layouts of
+            limited trees aren't cached.
+         */
+        public Builder<T> maxDepth(int maxDepth) {
+            this.maxDepth = maxDepth;
+            return this;
+        }
+
+        public Builder<T> maxNodes(int maxNodes) {
+            this.maxNodes = maxNodes;
+            return this;
+        }
+
+        public Builder<T> maxWidth(int maxWidth) {
+            this.maxWidth = maxWidth;
+            return this;
+        }
+
+        /*
+            Sets the label of placeholders for subtrees cut by maxDepth or maxNodes, given the root of the subtree.
+            The default is an ellipsis.  As the subtree isn't visited, a count of its nodes can only be shown if
+            nodes keep track of it, e.g. n -> "\u2026(" + n.getSize() + ")".
+         */
+        public Builder<T> elisionLabel(Function<T, String> elisionLabel) {
+            this.elisionLabel = elisionLabel;
+            return this;
+        }
+
+        /*
+            Reports the metrics of every call that prints trees (the time taken by each phase, and the size of the
+            trees and of the output) to the given listener, e.g. a HistogramRenderListener.  With the default
+            listener, RenderListener.NONE, nothing is timed or counted.
+         */
+        public Builder<T> renderListener(RenderListener renderListener) {
+            this.renderListener = renderListener;
+            return this;
+        }
+
+        /*
+            Prints each distinct subtree (same labels, same shape) only once: the first occurrence, reading the tree
+            in pre-order, is labelled "label [#k]", and later ones are printed as a single node "[=#k]".  Single
+            nodes are never collapsed.  Node objects shared within the tree (as in a DAG) are read once, and the
+            layout and output are proportional to the number of distinct subtrees rather than the size of the
+            expanded tree.  The layout cache isn't used, and maxDepth and maxNodes apply to the collapsed tree, so
+            the whole tree is still read.
+         */
+        public Builder<T> collapseRepeats(boolean collapseRepeats) {
+            this.collapseRepeats = collapseRepeats;
+            return this;
+        }
+
+        /*
+            Sets how printTrees(List, lineWidth) arranges trees in rows (see RowPacking).  Trees printed from an
+            Iterator or Stream are always printed in order, as they come.
+         */
+        public Builder<T> rowPacking(RowPacking rowPacking) {
+            this.rowPacking = rowPacking;
+            return this;
+        }
+    }
+
+    /*
+        Lays out a subtree, forking a task for its right subtree while laying out its left subtree, until forkDepth
+        is reached.  Layouts are immutable, so the results of tasks can simply be joined together.
+     */
+    private class LayoutTask extends RecursiveTask<Layout> {
+        private final T node;
+        private final int depth;
+        private final int depthLimit;
+        private final RenderState state;
+
+        LayoutTask(T node, int depth, int depthLimit, RenderState state) {
+            this.node = node;
+            this.depth = depth;
+            this.depthLimit = depthLimit;
+            this.state = state;
+        }
+
+        @Override
+        protected Layout compute() {
+            if (depth >= forkDepth || depth >= depthLimit) {
+                return buildLayoutSequentially(node, depth, depthLimit, state);
+            }
+            Layout cached = cachedLayout(node, depthLimit);
+            if (cached != null) return cached;
+            if (state.pastDeadline(1)) return elided(node, state);
+
+            PendingNode<T> pending = labelled(new PendingNode<>(node, depth), state);
+            T leftNode = left(node, state);
+            T rightNode = right(node, state);
+            LayoutTask rightTask = null;
+            if (rightNode != null) {
+                rightTask = new LayoutTask(rightNode, depth + 1, depthLimit, state);
+                rightTask.fork();
+            }
+            Layout left = leftNode == null ? null : new LayoutTask(leftNode, depth + 1, depthLimit, state).compute();
+            Layout right = rightTask == null ? null : rightTask.join();
+            return layoutNode(node, pending.label, pending.labelWidth, leftNode, rightNode, left, right, depthLimit,
+                    state);
+        }
+    }
+
+    /*
+        Draws trees from (inclusive) to to (exclusive), splitting the range in half until it's a single tree.
+     */
+    private class DrawAllTask extends RecursiveAction {
+        private final List<T> trees;
+        private final TreeDrawing[] drawings;
+        private final int from;
+        private final int to;
+        private final RenderState state;
+
+        DrawAllTask(List<T> trees, TreeDrawing[] drawings, int from, int to, RenderState state) {
+            this.trees = trees;
+            this.drawings = drawings;
+            this.from = from;
+            this.to = to;
+            this.state = state;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                drawings[from] = draw(layOut(trees.get(from), state), state);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new DrawAllTask(trees, drawings, from, mid, state),
+                        new DrawAllTask(trees, drawings, mid, to, state));
+            }
+        }
+    }
+
+    /*
+        State of one call that prints trees: the buffer output is assembled in (the calling thread's, reused from
+        call to call, see LineBuffer.acquire), and, if timed, the metrics as they're collected.  Trees may be laid
+        out and drawn on several threads at once, so what's collected then is kept in LongAdders; lines are only
+        written by the calling thread.  Closing the state gives the buffer back.
+     */
+    private static final class RenderState implements AutoCloseable {
+        private static final int DEADLINE_CHECK_INTERVAL = 1024;
+        private static final int LABEL_SAMPLE_INTERVAL = 16;
+
+        final LineBuffer lineBuffer;    // or null if the call doesn't print
+        final boolean timed;
+        final long startNanos;
+        final LongAdder labelNanos;
+        final LongAdder layoutNanos;
+        final LongAdder drawNanos;
+        final LongAdder trees;
+        final LongAdder nodes;
+        final AtomicInteger maxDepth;
+        long writeNanos = 0;
+        long rows = 0;
+        int columns = 0;
+        final RenderDeadline deadline;  // or null
+        volatile boolean stopped = false;
+        private int work = 0;           // since the deadline was last checked; updates may be lost in parallel layout
+        private int labelCalls = 0;     // calls to node accessors; likewise, which only shifts the sample
+
+        RenderState(boolean timed, RenderDeadline deadline, LineBuffer lineBuffer) {
+            this.timed = timed;
+            this.deadline = deadline;
+            this.lineBuffer = lineBuffer;
+            this.startNanos = timed ? System.nanoTime() : 0;
+            this.labelNanos = timed ? new LongAdder() : null;
+            this.layoutNanos = timed ? new LongAdder() : null;
+            this.drawNanos = timed ? new LongAdder() : null;
+            this.trees = timed ? new LongAdder() : null;
+            this.nodes = timed ? new LongAdder() : null;
+            this.maxDepth = timed ? new AtomicInteger() : null;
+        }
+
+        void laidOut(long start, Layout layout) {
+            layoutNanos.add(System.nanoTime() - start);
+            trees.increment();
+            if (layout != null) {
+                nodes.add(layout.nodeCount);
+                maxDepth.accumulateAndGet(layout.depth, Math::max);
+            }
+        }
+
+        /*
+            Counts work done (units of about a node laid out), checking the deadline every DEADLINE_CHECK_INTERVAL
+            units.  Returns whether the rendering is to stop, i.e. the deadline has passed and the rendering is to
+            be truncated; if it has passed and the rendering isn't to be truncated, throws CancellationException.
+         */
+        boolean pastDeadline(int units) {
+            if (deadline == null) return false;
+            if (stopped) return true;
+            work += units;
+            if (work < DEADLINE_CHECK_INTERVAL) return false;
+            work = 0;
+            if (!deadline.hasPassed()) return false;
+            if (!deadline.truncates()) throw new CancellationException(deadline.reason());
+            stopped = true;
+            return true;
+        }
+
+        /*
+            Whether to time a call to getLabel, getLeft, getRight or the like.  Only one call in
+            LABEL_SAMPLE_INTERVAL is timed, and counted for all of them, so that timing them (a pair of calls to
+            System.nanoTime()) doesn't cost as much as the calls themselves, and distort the layout time.
+         */
+        boolean sampleLabel() {
+            return timed && (++labelCalls & (LABEL_SAMPLE_INTERVAL - 1)) == 0;
+        }
+
+        void labelSampled(long start) {
+            labelNanos.add((System.nanoTime() - start) * LABEL_SAMPLE_INTERVAL);
+        }
+
+        void wrote(long start, int lines, int width) {
+            writeNanos += System.nanoTime() - start;
+            rows += lines;
+            columns = Math.max(columns, width);
+        }
+
+        // layout time is reported without the (estimated) label time spent within it
+        RenderMetrics metrics() {
+            long label = labelNanos.sum();
+            return new RenderMetrics(trees.intValue(), System.nanoTime() - startNanos, label,
+                    Math.max(0, layoutNanos.sum() - label), drawNanos.sum(), writeNanos, nodes.sum(), maxDepth.get(),
+                    rows, columns, lineBuffer == null ? 0 : lineBuffer.charsWritten());
+        }
+
+        @Override
+        public void close() {
+            if (lineBuffer != null) lineBuffer.release();
+        }
+    }
+
+    /*
+        A node waiting to be laid out, with its label and the label's width kept as plain fields (see labelled), so
+        that no label object is made per node unless labels are cached.
+     */
+    private abstract static class LabelledNode<T> {
+        final T node;
+        final int depth;
+        String label;
+        int labelWidth;
+
+        LabelledNode(T node, int depth) {
+            this.node = node;
+            this.depth = depth;
+        }
+    }
+
+    private static class PendingNaryNode<T> extends LabelledNode<T> {
+        final List<T> children;
+        int visitedSubtrees = 0;
+
+        PendingNaryNode(T node, List<T> children, int depth) {
+            super(node, depth);
+            this.children = children;
+        }
     }
 
-    private static class TreeLine {
-        String line;
-        int leftOffset;
-        int rightOffset;
+    private static class PendingNode<T> extends LabelledNode<T> {
+        T left;
+        T right;
+        int visitedSubtrees = 0;
 
-        TreeLine(String line, int leftOffset, int rightOffset) {
-            this.line = line;
-            this.leftOffset = leftOffset;
-            this.rightOffset = rightOffset;
+        PendingNode(T node, int depth) {
+            super(node, depth);
         }
     }
 }
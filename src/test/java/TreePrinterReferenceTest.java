@@ -0,0 +1,163 @@
+import org.junit.Test;
+import tech.vanyo.treePrinter.TreePrinter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+
+/*
+    Checks that TreePrinter prints exactly what the original recursive printer (ReferenceTreePrinter) printed, for
+    the shapes of the demo programs, with every combination of branch style and a range of spacings.
+ */
+public class TreePrinterReferenceTest {
+
+    private static final List<Function<TreeNode, String>> LABELS = Arrays.asList(
+            n -> "" + n.getValue(),
+            n -> "x" + n.getValue() * 37 % 1000,
+            n -> n.getValue() % 3 == 0 ? "abcd" : "q",
+            n -> "\u001b[31m" + n.getValue() + "\u001b[0m");
+
+    @Test
+    public void printTreeMatchesReference() {
+        for (TreeNode tree : shapes()) {
+            for (Function<TreeNode, String> label : LABELS) {
+                for (int hspace = 0; hspace <= 3; hspace++) {
+                    for (int branches = 0; branches < 3; branches++) {
+                        boolean squareBranches = branches > 0;
+                        boolean lrAgnostic = branches == 2;
+                        String expected = referenceTree(tree, label, squareBranches, lrAgnostic, hspace);
+                        StringBuilder actual = new StringBuilder();
+                        printer(label, squareBranches, lrAgnostic, hspace).printTree(tree, actual);
+                        assertEquals("hspace " + hspace + ", squareBranches " + squareBranches + ", lrAgnostic "
+                                + lrAgnostic, expected, actual.toString());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void printTreesMatchesReference() {
+        List<TreeNode> trees = new ArrayList<>(EnumTrees.enumTrees(5));
+        trees.addAll(shapes().subList(0, 20));
+        for (int lineWidth : new int[] {40, 120, 300}) {
+            for (int branches = 0; branches < 3; branches++) {
+                boolean squareBranches = branches > 0;
+                boolean lrAgnostic = branches == 2;
+                Function<TreeNode, String> label = LABELS.get(0);
+                String expected = capture(out -> reference(label, squareBranches, lrAgnostic, 2, out)
+                        .printTrees(trees, lineWidth));
+                StringBuilder actual = new StringBuilder();
+                printer(label, squareBranches, lrAgnostic, 2).printTrees(trees, lineWidth, actual);
+                assertEquals("lineWidth " + lineWidth + ", squareBranches " + squareBranches + ", lrAgnostic "
+                        + lrAgnostic, expected, actual.toString());
+            }
+        }
+    }
+
+    @Test
+    public void deepSpineMatchesReference() {
+        TreeNode spine = spine(1000);
+        for (int branches = 0; branches < 3; branches++) {
+            boolean squareBranches = branches > 0;
+            boolean lrAgnostic = branches == 2;
+            String expected = referenceTree(spine, LABELS.get(0), squareBranches, lrAgnostic, 1);
+            StringBuilder actual = new StringBuilder();
+            printer(LABELS.get(0), squareBranches, lrAgnostic, 1).printTree(spine, actual);
+            assertEquals(expected, actual.toString());
+        }
+    }
+
+    // a degenerate tree far deeper than a recursive layout could handle on a small stack
+    @Test
+    public void deepSpinePrintsOnSmallStack() throws InterruptedException {
+        int size = 100000;
+        TreeNode spine = spine(size);
+        StringBuilder out = new StringBuilder();
+        Throwable[] thrown = new Throwable[1];
+        Thread thread = new Thread(null, () -> {
+            try {
+                printer(LABELS.get(0), true, false, 1).printTree(spine, out);
+            } catch (Throwable e) {
+                thrown[0] = e;
+            }
+        }, "small stack", 256 * 1024);
+        thread.start();
+        thread.join();
+        if (thrown[0] != null) throw new AssertionError(thrown[0]);
+
+        String[] lines = out.toString().split(System.lineSeparator());
+        assertEquals(2 * size - 1, lines.length);
+        assertEquals("0", lines[0].trim());
+        assertEquals("" + (size - 1), lines[lines.length - 1].trim());
+    }
+
+    // the trees of the RandomTree, EnumTrees and CollatzTree demos, and the empty tree
+    private static List<TreeNode> shapes() {
+        List<TreeNode> trees = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100; i++) {
+            trees.add(RandomTree.randomTree(1 + random.nextInt(60), random));
+        }
+        trees.addAll(EnumTrees.enumTrees(5));
+        for (int depth = 1; depth <= 14; depth++) {
+            trees.add(CollatzTree.collatzTree(depth));
+        }
+        trees.add(null);
+        return trees;
+    }
+
+    // nodes 0 .. size - 1, each the left or right child (alternately) of the one before
+    private static TreeNode spine(int size) {
+        TreeNode root = new TreeNode(0);
+        TreeNode node = root;
+        for (int i = 1; i < size; i++) {
+            TreeNode child = new TreeNode(i);
+            if (i % 2 == 0) node.setLeft(child);
+            else node.setRight(child);
+            node = child;
+        }
+        return root;
+    }
+
+    private static TreePrinter<TreeNode> printer(Function<TreeNode, String> label, boolean squareBranches,
+                                                 boolean lrAgnostic, int hspace) {
+        return TreePrinter.builder(label, TreeNode::getLeft, TreeNode::getRight)
+                .squareBranches(squareBranches)
+                .lrAgnostic(lrAgnostic)
+                .hspace(hspace)
+                .build();
+    }
+
+    private static String referenceTree(TreeNode tree, Function<TreeNode, String> label, boolean squareBranches,
+                                        boolean lrAgnostic, int hspace) {
+        return capture(out -> reference(label, squareBranches, lrAgnostic, hspace, out).printTree(tree));
+    }
+
+    private static ReferenceTreePrinter<TreeNode> reference(Function<TreeNode, String> label,
+                                                            boolean squareBranches, boolean lrAgnostic, int hspace,
+                                                            PrintStream out) {
+        return new ReferenceTreePrinter<>(label, TreeNode::getLeft, TreeNode::getRight, squareBranches, lrAgnostic,
+                hspace, out);
+    }
+
+    private static String capture(Consumer<PrintStream> print) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            PrintStream out = new PrintStream(bytes, true, "UTF-8");
+            print.accept(out);
+            out.flush();
+            return bytes.toString("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
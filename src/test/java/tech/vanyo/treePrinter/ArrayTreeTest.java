@@ -0,0 +1,102 @@
+package tech.vanyo.treePrinter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ArrayTreeTest {
+
+    private static final String NL = System.lineSeparator();
+
+    @Test
+    public void heapPrintsAsLinkedTree() {
+        for (int branches = 0; branches < 3; branches++) {
+            TreePrinter<TestNode> printer = TestNode.builder()
+                    .squareBranches(branches > 0)
+                    .lrAgnostic(branches == 2)
+                    .build();
+            for (int n = 0; n <= 70; n++) {
+                int[] labelId = new int[n];
+                String[] labelTable = new String[n];
+                for (int i = 0; i < n; i++) {
+                    labelId[i] = i;
+                    labelTable[i] = "" + i;
+                }
+                StringBuilder out = new StringBuilder();
+                printer.printIndexed(ArrayTree.heap(labelId, labelTable), out);
+                assertEquals(n + " nodes", TestNode.print(printer, heap(0, n)), out.toString());
+            }
+        }
+    }
+
+    @Test
+    public void missingChildren() {
+        // 0 has children 1 and 2, 1 has just a right child 3, and 2 has just a left child 4; 1 and 2, and 3 and 4,
+        // share labels
+        ArrayTree tree = new ArrayTree(0,
+                new int[] {1, IndexedTree.NONE, 4, IndexedTree.NONE, IndexedTree.NONE},
+                new int[] {2, 3, IndexedTree.NONE, IndexedTree.NONE, IndexedTree.NONE},
+                new int[] {0, 1, 1, 2, 2},
+                new String[] {"root", "a", "b"});
+        TestNode linked = new TestNode(0,
+                new TestNode(1, null, new TestNode(2)),
+                new TestNode(1, new TestNode(2), null));
+        TreePrinter<TestNode> printer = TreePrinter.<TestNode>builder(
+                n -> new String[] {"root", "a", "b"}[n.value], n -> n.left, n -> n.right).build();
+        StringBuilder out = new StringBuilder();
+        printer.printIndexed(tree, out);
+        assertEquals(TestNode.print(printer, linked), out.toString());
+        assertEquals(""
+                + "   root  " + NL
+                + "   / \\   " + NL
+                + "  /   \\  " + NL
+                + " /     \\ " + NL
+                + "a       a" + NL
+                + " \\     / " + NL
+                + "  b   b  " + NL, out.toString());
+    }
+
+    @Test
+    public void emptyTree() {
+        ArrayTree tree = new ArrayTree(IndexedTree.NONE, new int[0], new int[0], new int[0], new String[0]);
+        StringBuilder out = new StringBuilder();
+        TestNode.builder().build().printIndexed(tree, out);
+        assertEquals("", out.toString());
+        assertEquals(0, ArrayTree.heap(new int[0], new String[0]).size());
+    }
+
+    @Test
+    public void nodesOutOfRangeAreRejected() {
+        int[] labelId = {0, 0, 0};
+        String[] labelTable = {"x"};
+        assertRejected("root is 3", () -> new ArrayTree(3, new int[] {1, -1, -1}, new int[] {2, -1, -1}, labelId,
+                labelTable));
+        assertRejected("root is -2", () -> new ArrayTree(-2, new int[] {1, -1, -1}, new int[] {2, -1, -1}, labelId,
+                labelTable));
+        assertRejected("left child of node 1 is 3", () -> new ArrayTree(0, new int[] {1, 3, -1},
+                new int[] {2, -1, -1}, labelId, labelTable));
+        assertRejected("right child of node 2 is -5", () -> new ArrayTree(0, new int[] {1, -1, -1},
+                new int[] {2, -1, -5}, labelId, labelTable));
+        assertRejected("label id of node 1 is 1", () -> new ArrayTree(0, new int[] {1, -1, -1},
+                new int[] {2, -1, -1}, new int[] {0, 1, 0}, labelTable));
+        assertRejected("label id of node 2 is -1", () -> ArrayTree.heap(new int[] {0, 0, -1}, labelTable));
+        assertRejected("one entry per node", () -> new ArrayTree(0, new int[] {1, -1}, new int[] {2, -1, -1},
+                labelId, labelTable));
+    }
+
+    private static void assertRejected(String message, Runnable newTree) {
+        try {
+            newTree.run();
+            fail("accepted a tree with " + message);
+        } catch (IllegalArgumentException e) {
+            if (!e.getMessage().contains(message)) throw new AssertionError(e.getMessage() + " isn't " + message);
+        }
+    }
+
+    // linked tree of nodes i .. n - 1 in heap order, rooted at node i
+    private static TestNode heap(int i, int n) {
+        if (i >= n) return null;
+        return new TestNode(i, heap(2 * i + 1, n), heap(2 * i + 2, n));
+    }
+}
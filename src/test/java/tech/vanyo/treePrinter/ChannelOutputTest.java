@@ -0,0 +1,95 @@
+package tech.vanyo.treePrinter;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChannelOutputTest {
+
+    @Test
+    public void nonAsciiOutputIsEncodedAsUtf8() {
+        TreePrinter<TestNode> printer = TreePrinter.<TestNode>builder(
+                n -> n.value % 3 == 0 ? "é" + n.value : n.value % 3 == 1 ? "漢" + n.value : "🌳" + n.value,
+                n -> n.left, n -> n.right)
+                .squareBranches(true)
+                .build();
+        TestNode tree = TestNode.random(100, new Random(103));
+        RecordingChannel channel = new RecordingChannel();
+        printer.printTree(tree, channel);
+
+        String expected = TestNode.print(printer, tree);
+        assertTrue(expected.contains("┴") && expected.contains("漢") && expected.contains("🌳"));
+        assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), channel.bytes());
+    }
+
+    // output several times the size of the writer's largest buffer, written in a few large writes
+    @Test
+    public void largeTreeIsWrittenInLargeChunks() {
+        TreePrinter<TestNode> printer = TestNode.builder().squareBranches(true).build();
+        TestNode tree = TestNode.random(20000, new Random(107));
+        RecordingChannel channel = new RecordingChannel();
+        printer.printTree(tree, channel);
+
+        byte[] expected = TestNode.print(printer, tree).getBytes(StandardCharsets.UTF_8);
+        assertTrue(expected.length > 2 << 20);
+        assertArrayEquals(expected, channel.bytes());
+        // the buffer starts at 16K and doubles up to 1M, so a few writes per megabyte at most
+        assertTrue(channel.writes + " writes", channel.writes <= 8 + expected.length / (1 << 20));
+    }
+
+    @Test
+    public void manyTreesAreWrittenInLargeChunks() {
+        TreePrinter<TestNode> printer = TestNode.builder().build();
+        Random random = new Random(109);
+        List<TestNode> trees = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) trees.add(TestNode.random(random.nextInt(20), random));
+        RecordingChannel channel = new RecordingChannel();
+        printer.printTrees(trees, 120, channel);
+
+        StringBuilder out = new StringBuilder();
+        printer.printTrees(trees, 120, out);
+        byte[] expected = out.toString().getBytes(StandardCharsets.UTF_8);
+        assertTrue(expected.length > 1 << 20);
+        assertArrayEquals(expected, channel.bytes());
+        int lines = out.toString().split(System.lineSeparator()).length;
+        assertTrue(channel.writes + " writes for " + lines + " lines", channel.writes * 100 < lines);
+    }
+
+    // channel keeping what's written to it, and counting the writes
+    private static final class RecordingChannel implements WritableByteChannel {
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        int writes = 0;
+
+        @Override
+        public int write(ByteBuffer src) {
+            writes++;
+            int count = src.remaining();
+            byte[] bytes = new byte[count];
+            src.get(bytes);
+            written.write(bytes, 0, count);
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        byte[] bytes() {
+            return written.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package tech.vanyo.treePrinter;
+
+import org.junit.Test;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CollapseRepeatsTest {
+
+    private static final TreePrinter<TestNode> PLAIN = TestNode.builder().build();
+    private static final TreePrinter<TestNode> COLLAPSING = TestNode.builder().collapseRepeats(true).build();
+
+    @Test
+    public void treeWithoutRepeatsIsPrintedAsIs() {
+        Random random = new Random(11);
+        for (int i = 0; i < 50; i++) {
+            TestNode tree = TestNode.random(1 + random.nextInt(100), random);
+            assertEquals(TestNode.print(PLAIN, tree), TestNode.print(COLLAPSING, tree));
+        }
+    }
+
+    @Test
+    public void repeatedSubtreeIsPrintedOnce() {
+        // two equal (but distinct) subtrees 1(2, 3) under the root
+        TestNode tree = new TestNode(0,
+                new TestNode(1, new TestNode(2), new TestNode(3)),
+                new TestNode(1, new TestNode(2), new TestNode(3)));
+
+        Map<TestNode, String> labels = new IdentityHashMap<>();
+        TestNode first = new TestNode(0, new TestNode(2), new TestNode(3));
+        TestNode repeat = new TestNode(0);
+        labels.put(first, "1 [#1]");
+        labels.put(repeat, "[=#1]");
+        TestNode expected = new TestNode(0, first, repeat);
+
+        assertEquals(printLabelled(expected, labels), TestNode.print(COLLAPSING, tree));
+    }
+
+    @Test
+    public void singleNodesAreNotCollapsed() {
+        TestNode tree = new TestNode(0,
+                new TestNode(5, new TestNode(7), null),
+                new TestNode(5, null, new TestNode(7)));
+        assertEquals(TestNode.print(PLAIN, tree), TestNode.print(COLLAPSING, tree));
+    }
+
+    // a DAG of 40 nodes, each both children of the one above, is a tree of 2^40 - 1 nodes when expanded
+    @Test
+    public void sharedNodesAreReadOnce() {
+        int size = 40;
+        TestNode tree = new TestNode(size - 1);
+        for (int i = size - 2; i >= 0; i--) tree = new TestNode(i, tree, tree);
+
+        AtomicInteger labelCalls = new AtomicInteger();
+        TreePrinter<TestNode> printer = TreePrinter.<TestNode>builder(n -> {
+                    labelCalls.incrementAndGet();
+                    return n.label();
+                }, n -> n.left, n -> n.right)
+                .collapseRepeats(true)
+                .build();
+        String out = TestNode.print(printer, tree);
+
+        assertEquals(size, labelCalls.get());
+        // nodes 1 .. size - 2 are repeated subtrees, each printed once, with a reference for its repeat
+        assertTrue(out.contains("1 [#1]"));
+        assertTrue(out.contains((size - 2) + " [#" + (size - 2) + "]"));
+        assertFalse(out.contains("#" + (size - 1) + "]"));
+        assertEquals(size - 2, out.split("\\[=#", -1).length - 1);
+        assertEquals(size, labelLines(out));
+    }
+
+    private static String printLabelled(TestNode root, Map<TestNode, String> labels) {
+        TreePrinter<TestNode> printer = TreePrinter.<TestNode>builder(n -> labels.getOrDefault(n, n.label()),
+                n -> n.left, n -> n.right).build();
+        return TestNode.print(printer, root);
+    }
+
+    // lines with node labels, i.e. not only branches
+    private static int labelLines(String out) {
+        int count = 0;
+        for (String line : out.split(System.lineSeparator())) {
+            if (line.matches(".*[0-9].*")) count++;
+        }
+        return count;
+    }
+}
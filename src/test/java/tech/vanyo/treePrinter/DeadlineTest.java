@@ -0,0 +1,101 @@
+package tech.vanyo.treePrinter;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DeadlineTest {
+
+    private static final TreePrinter<TestNode> PRINTER = TestNode.builder().build();
+    private static final String MARKER = "[rendering cancelled, output truncated]" + System.lineSeparator();
+
+    // stopped while laying out the tree: the part laid out is printed in full, with placeholders for the rest
+    @Test
+    public void stoppedDuringLayoutPrintsWhatWasLaidOut() {
+        TestNode tree = TestNode.random(5000, new Random(3));
+        StringBuilder out = new StringBuilder();
+        PRINTER.printTree(tree, out, cancelled().truncating());
+
+        String printed = out.toString();
+        assertTrue(printed.endsWith(MARKER));
+        String drawing = printed.substring(0, printed.length() - MARKER.length());
+        assertTrue(drawing.contains("\u2026"));
+        assertTrue(drawing.split(System.lineSeparator()).length > 10);
+
+        // the same as the drawing rendered up to the same point
+        StringBuilder rendered = new StringBuilder();
+        PRINTER.render(tree, cancelled().truncating()).print(rendered);
+        assertEquals(rendered.toString(), drawing);
+    }
+
+    // stopped while writing lines: the lines written are those of the full output, and the rest are left out
+    @Test
+    public void stoppedDuringOutputLeavesOutTheRest() {
+        TestNode tree = TestNode.spine(100000);
+        String full = TestNode.print(PRINTER, tree);
+
+        RenderDeadline deadline = RenderDeadline.cancellable().truncating();
+        StringBuilder printed = new StringBuilder();
+        Appendable out = new Appendable() {
+            @Override
+            public Appendable append(CharSequence csq) {
+                deadline.cancel();
+                printed.append(csq);
+                return this;
+            }
+
+            @Override
+            public Appendable append(CharSequence csq, int start, int end) {
+                return append(csq.subSequence(start, end));
+            }
+
+            @Override
+            public Appendable append(char c) {
+                return append(String.valueOf(c));
+            }
+        };
+        PRINTER.printTree(tree, out, deadline);
+
+        String output = printed.toString();
+        assertTrue(output.endsWith(MARKER));
+        String lines = output.substring(0, output.length() - MARKER.length());
+        assertTrue(lines.length() > 0);
+        assertTrue(lines.length() < full.length());
+        assertTrue(lines.endsWith(System.lineSeparator()));
+        assertTrue(full.startsWith(lines));
+        assertFalse(lines.contains("\u2026"));
+    }
+
+    @Test
+    public void deadlineThatDoesNotTruncateThrows() {
+        TestNode tree = TestNode.random(5000, new Random(3));
+        StringBuilder out = new StringBuilder();
+        try {
+            PRINTER.printTree(tree, out, cancelled());
+            fail();
+        } catch (CancellationException e) {
+            assertEquals("rendering cancelled", e.getMessage());
+        }
+        assertEquals("", out.toString());
+    }
+
+    @Test
+    public void deadlineNotPassedPrintsInFull() {
+        TestNode tree = TestNode.random(5000, new Random(3));
+        StringBuilder out = new StringBuilder();
+        PRINTER.printTree(tree, out, RenderDeadline.cancellable().truncating());
+        assertEquals(TestNode.print(PRINTER, tree), out.toString());
+    }
+
+    private static RenderDeadline cancelled() {
+        RenderDeadline deadline = RenderDeadline.cancellable();
+        deadline.cancel();
+        return deadline;
+    }
+}
@@ -0,0 +1,98 @@
+package tech.vanyo.treePrinter;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+public class ForkJoinLayoutTest {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @AfterClass
+    public static void shutDownPool() {
+        POOL.shutdown();
+    }
+
+    // laying out in parallel gives the same output as laying out sequentially
+    @Test
+    public void parallelLayoutMatchesSequential() {
+        Random random = new Random(67);
+        for (int branches = 0; branches < 3; branches++) {
+            TreePrinter<TestNode> sequential = TestNode.builder()
+                    .squareBranches(branches > 0)
+                    .lrAgnostic(branches == 2)
+                    .build();
+            for (int forkDepth : new int[] {0, 1, 3, 8, 20}) {
+                for (int cacheSize : new int[] {0, 10000}) {
+                    TreePrinter<TestNode> parallel = sequential.toBuilder()
+                            .forkJoinPool(POOL)
+                            .forkDepth(forkDepth)
+                            .layoutCacheSize(cacheSize)
+                            .build();
+                    for (int i = 0; i < 10; i++) {
+                        TestNode tree = TestNode.random(1 + random.nextInt(1000), random);
+                        String expected = TestNode.print(sequential, tree);
+                        String message = "forkDepth " + forkDepth + ", layoutCacheSize " + cacheSize
+                                + ", branches " + branches;
+                        assertEquals(message, expected, TestNode.print(parallel, tree));
+                        // again, from the cache if there is one
+                        assertEquals(message, expected, TestNode.print(parallel, tree));
+                    }
+                }
+            }
+        }
+    }
+
+    // a truncating deadline that doesn't pass is checked from every task, and changes nothing
+    @Test
+    public void parallelLayoutWithDeadlineMatchesSequential() {
+        TreePrinter<TestNode> sequential = TestNode.builder().build();
+        TreePrinter<TestNode> parallel = TestNode.builder().forkJoinPool(POOL).forkDepth(6).build();
+        Random random = new Random(71);
+        for (int i = 0; i < 10; i++) {
+            TestNode tree = TestNode.random(1 + random.nextInt(20000), random);
+            StringBuilder expected = new StringBuilder();
+            sequential.printTree(tree, expected, RenderDeadline.cancellable().truncating());
+            StringBuilder actual = new StringBuilder();
+            parallel.printTree(tree, actual, RenderDeadline.cancellable().truncating());
+            assertEquals(expected.toString(), actual.toString());
+            assertEquals(TestNode.print(sequential, tree), actual.toString());
+        }
+    }
+
+    // trees of printTrees drawn in parallel are printed as when drawn one after the other
+    @Test
+    public void parallelPrintTreesMatchesSequential() {
+        Random random = new Random(79);
+        for (RowPacking rowPacking : RowPacking.values()) {
+            TreePrinter<TestNode> sequential = TestNode.builder().rowPacking(rowPacking).build();
+            TreePrinter<TestNode> parallel = sequential.toBuilder().forkJoinPool(POOL).forkDepth(2).build();
+            for (int i = 0; i < 20; i++) {
+                List<TestNode> trees = new ArrayList<>();
+                int count = random.nextInt(300);
+                for (int k = 0; k < count; k++) trees.add(TestNode.random(random.nextInt(30), random));
+                int lineWidth = 40 + random.nextInt(200);
+                StringBuilder expected = new StringBuilder();
+                sequential.printTrees(trees, lineWidth, expected);
+                StringBuilder actual = new StringBuilder();
+                parallel.printTrees(trees, lineWidth, actual);
+                assertEquals(rowPacking + ", lineWidth " + lineWidth, expected.toString(), actual.toString());
+            }
+        }
+    }
+
+    // a tree printed from within a task of the same pool is laid out in that task
+    @Test
+    public void printingFromWithinThePool() {
+        TreePrinter<TestNode> parallel = TestNode.builder().forkJoinPool(POOL).forkDepth(4).build();
+        TestNode tree = TestNode.random(3000, new Random(73));
+        String fromPool = POOL.submit(() -> TestNode.print(parallel, tree)).join();
+        assertEquals(TestNode.print(TestNode.builder().build(), tree), fromPool);
+    }
+}
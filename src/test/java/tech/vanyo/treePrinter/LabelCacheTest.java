@@ -0,0 +1,135 @@
+package tech.vanyo.treePrinter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class LabelCacheTest {
+
+    @Test
+    public void reprintingCallsNoLabelFunction() {
+        AtomicInteger calls = new AtomicInteger();
+        TreePrinter<TestNode> printer = counting(calls).labelCacheSize(1000).build();
+        TestNode tree = TestNode.random(300, new Random(59));
+        String expected = TestNode.print(TestNode.builder().build(), tree);
+
+        assertEquals(expected, TestNode.print(printer, tree));
+        assertEquals(300, calls.get());
+        assertEquals(expected, TestNode.print(printer, tree));
+        assertEquals(300, calls.get());
+    }
+
+    @Test
+    public void nodesWithEqualKeysShareALabel() {
+        AtomicInteger calls = new AtomicInteger();
+        TreePrinter<TestNode> printer = counting(calls).labelCacheSize(1000).labelKey(n -> n.value).build();
+        // a complete tree of 31 nodes, with 5 distinct values, one per level
+        TestNode tree = complete(5, 0);
+
+        assertEquals(TestNode.print(TestNode.builder().build(), tree), TestNode.print(printer, tree));
+        assertEquals(5, calls.get());
+    }
+
+    @Test
+    public void nodeChangedDropsTheLabel() {
+        AtomicInteger calls = new AtomicInteger();
+        TreePrinter<TestNode> printer = counting(calls).labelCacheSize(1000).build();
+        TestNode tree = new TestNode(2, new TestNode(1), new TestNode(3));
+        TestNode.print(printer, tree);
+
+        tree.left.value = 1234;
+        String stale = TestNode.print(printer, tree);
+        assertEquals(-1, stale.indexOf("1234"));
+
+        calls.set(0);
+        printer.nodeChanged(tree.left);
+        assertEquals(TestNode.print(TestNode.builder().build(), tree), TestNode.print(printer, tree));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void equalLabelsAreInterned() {
+        LabelCache<TestNode> cache = new LabelCache<>(100, null, LabelWidth.DISPLAY);
+        Function<TestNode, String> getLabel = n -> "漢" + n.value % 2;
+        LabelCache.Label first = cache.label(new TestNode(1), getLabel);
+        LabelCache.Label second = cache.label(new TestNode(3), getLabel);
+        assertSame(first, second);
+        assertEquals("漢1", first.text);
+        assertEquals(3, first.width);
+    }
+
+    // with fewer than a few hundred entries there's a single stripe, evicting the least recently used label
+    @Test
+    public void leastRecentlyUsedLabelIsEvicted() {
+        AtomicInteger calls = new AtomicInteger();
+        Function<TestNode, String> getLabel = n -> {
+            calls.incrementAndGet();
+            return n.label();
+        };
+        LabelCache<TestNode> cache = new LabelCache<>(2, null, LabelWidth.ANSI);
+        TestNode a = new TestNode(1);
+        TestNode b = new TestNode(2);
+        TestNode c = new TestNode(3);
+        cache.label(a, getLabel);
+        cache.label(b, getLabel);
+        cache.label(a, getLabel);
+        cache.label(c, getLabel);
+        assertEquals(3, calls.get());
+        cache.label(a, getLabel);
+        assertEquals(3, calls.get());
+        cache.label(b, getLabel);
+        assertEquals(4, calls.get());
+    }
+
+    // threads sharing a cache too small for all of their nodes always get the right label
+    @Test
+    public void threadsShareTheCache() throws InterruptedException {
+        LabelCache<TestNode> cache = new LabelCache<>(2000, null, LabelWidth.ANSI);
+        List<TestNode> nodes = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) nodes.add(new TestNode(i));
+        Function<TestNode, String> getLabel = n -> "n" + n.value % 700;
+
+        List<Throwable> failures = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Random random = new Random(t);
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < 50000; i++) {
+                        TestNode node = nodes.get(random.nextInt(nodes.size()));
+                        LabelCache.Label label = cache.label(node, getLabel);
+                        assertEquals(getLabel.apply(node), label.text);
+                        assertEquals(label.text.length(), label.width);
+                        if (i % 1000 == 0) cache.remove(node);
+                    }
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+        if (!failures.isEmpty()) throw new AssertionError(failures.get(0));
+    }
+
+    private static TreePrinter.Builder<TestNode> counting(AtomicInteger calls) {
+        return TreePrinter.builder(n -> {
+            calls.incrementAndGet();
+            return n.label();
+        }, n -> n.left, n -> n.right);
+    }
+
+    private static TestNode complete(int depth, int value) {
+        if (depth == 0) return null;
+        return new TestNode(value, complete(depth - 1, value + 1), complete(depth - 1, value + 1));
+    }
+}
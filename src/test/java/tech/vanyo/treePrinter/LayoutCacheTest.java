@@ -0,0 +1,158 @@
+package tech.vanyo.treePrinter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LayoutCacheTest {
+
+    private final AtomicInteger labelCalls = new AtomicInteger();
+
+    private TreePrinter<TestNode> countingPrinter(int cacheSize) {
+        return TreePrinter.<TestNode>builder(n -> {
+            labelCalls.incrementAndGet();
+            return n.label();
+        }, n -> n.left, n -> n.right).squareBranches(true).layoutCacheSize(cacheSize).build();
+    }
+
+    @Test
+    public void cachedOutputMatchesUncached() {
+        Random random = new Random(7);
+        TreePrinter<TestNode> uncached = TestNode.builder().squareBranches(true).build();
+        for (int cacheSize : new int[] {1, 10, 10000}) {
+            TreePrinter<TestNode> cached = TestNode.builder().squareBranches(true).layoutCacheSize(cacheSize).build();
+            for (int i = 0; i < 50; i++) {
+                TestNode tree = TestNode.random(1 + random.nextInt(100), random);
+                String expected = TestNode.print(uncached, tree);
+                assertEquals(expected, TestNode.print(cached, tree));
+                assertEquals(expected, TestNode.print(cached, tree));
+            }
+        }
+    }
+
+    @Test
+    public void reprintingReadsNoNodes() {
+        TestNode tree = TestNode.random(200, new Random(1));
+        TreePrinter<TestNode> printer = countingPrinter(1000);
+        String first = TestNode.print(printer, tree);
+        assertEquals(200, labelCalls.get());
+
+        labelCalls.set(0);
+        assertEquals(first, TestNode.print(printer, tree));
+        assertEquals(0, labelCalls.get());
+    }
+
+    @Test
+    public void sharedSubtreeIsLaidOutOnce() {
+        TestNode shared = TestNode.random(50, new Random(2));
+        TestNode root = new TestNode(0, shared, new TestNode(100, null, shared));
+        TreePrinter<TestNode> printer = countingPrinter(1000);
+        String output = TestNode.print(printer, root);
+        assertEquals(2 + 50, labelCalls.get());
+        assertEquals(TestNode.print(TestNode.builder().squareBranches(true).build(), root), output);
+    }
+
+    @Test
+    public void clearLayoutCacheLaysOutAgain() {
+        TestNode tree = TestNode.random(100, new Random(3));
+        TreePrinter<TestNode> printer = countingPrinter(1000);
+        String first = TestNode.print(printer, tree);
+        printer.clearLayoutCache();
+        labelCalls.set(0);
+        assertEquals(first, TestNode.print(printer, tree));
+        assertEquals(100, labelCalls.get());
+    }
+
+    @Test
+    public void cacheHoldsAtMostItsCapacity() {
+        TestNode tree = TestNode.random(100, new Random(4));
+        TreePrinter<TestNode> printer = countingPrinter(10);
+        TestNode.print(printer, tree);
+        labelCalls.set(0);
+        TestNode.print(printer, tree);
+        assertTrue(labelCalls.get() >= 90);
+    }
+
+    @Test
+    public void eachPrinterHasItsOwnCache() {
+        TestNode tree = TestNode.random(100, new Random(5));
+        TreePrinter<TestNode> printer = countingPrinter(1000);
+        TestNode.print(printer, tree);
+        labelCalls.set(0);
+        TestNode.print(printer.toBuilder().build(), tree);
+        assertEquals(100, labelCalls.get());
+    }
+
+    @Test
+    public void changedLabelRelaysOutPathToRoot() {
+        TestNode tree = TestNode.random(300, new Random(6));
+        TreePrinter<TestNode> printer = countingPrinter(1000);
+        TestNode.print(printer, tree);
+
+        List<TestNode> path = pathToLeaf(tree, new Random(6));
+        TestNode changed = path.get(path.size() - 1);
+        changed.value = 1000;
+        printer.nodeChanged(changed);
+        labelCalls.set(0);
+        assertEquals(TestNode.print(uncached(), tree), TestNode.print(printer, tree));
+        assertEquals(path.size(), labelCalls.get());
+    }
+
+    @Test
+    public void rotationsAndInsertionsMatchFreshLayout() {
+        Random random = new Random(8);
+        TestNode root = new TestNode(0, TestNode.random(300, random), null);   // 0 is a sentinel above the tree
+        TreePrinter<TestNode> printer = countingPrinter(1000);
+        for (int i = 0; i < 200; i++) {
+            TestNode.print(printer, root);
+            List<TestNode> path = pathToLeaf(root, random);
+            if (path.size() >= 3 && random.nextBoolean()) {
+                // rotate the node below the parent up, reporting the nodes whose children change
+                TestNode parent = path.get(path.size() - 3);
+                TestNode node = path.get(path.size() - 2);
+                TestNode child = path.get(path.size() - 1);
+                if (node.left == child) {
+                    node.left = child.right;
+                    child.right = node;
+                } else {
+                    node.right = child.left;
+                    child.left = node;
+                }
+                if (parent.left == node) parent.left = child;
+                else parent.right = child;
+                printer.nodeChanged(node);
+                printer.nodeChanged(child);
+                printer.nodeChanged(parent);
+            } else {
+                TestNode leaf = path.get(path.size() - 1);
+                if (random.nextBoolean()) leaf.left = new TestNode(1000 + i);
+                else leaf.right = new TestNode(1000 + i);
+                printer.nodeChanged(leaf);
+            }
+            assertEquals(TestNode.print(uncached(), root), TestNode.print(printer, root));
+        }
+    }
+
+    private static TreePrinter<TestNode> uncached() {
+        return TestNode.builder().squareBranches(true).build();
+    }
+
+    // the nodes from root down to a leaf, choosing a child at random at each step
+    private static List<TestNode> pathToLeaf(TestNode root, Random random) {
+        List<TestNode> path = new ArrayList<>();
+        TestNode node = root;
+        while (node != null) {
+            path.add(node);
+            if (node.left == null) node = node.right;
+            else if (node.right == null) node = node.left;
+            else node = random.nextBoolean() ? node.left : node.right;
+        }
+        return path;
+    }
+}
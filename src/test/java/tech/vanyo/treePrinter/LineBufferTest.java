@@ -0,0 +1,95 @@
+package tech.vanyo.treePrinter;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class LineBufferTest {
+
+    @Test
+    public void bufferIsReusedOnceReleased() throws IOException {
+        LineBuffer buffer = LineBuffer.acquire();
+        buffer.append("left over");
+        buffer.release();
+
+        LineBuffer again = LineBuffer.acquire();
+        assertSame(buffer, again);
+        StringBuilder out = new StringBuilder();
+        again.append('x');
+        again.writeTo(out);
+        assertEquals("x", out.toString());
+        assertEquals(1, again.charsWritten());
+        again.release();
+    }
+
+    @Test
+    public void nestedCallsGetTheirOwnBuffer() {
+        LineBuffer outer = LineBuffer.acquire();
+        LineBuffer inner = LineBuffer.acquire();
+        assertNotSame(outer, inner);
+        inner.release();
+        outer.release();
+        assertSame(outer, LineBuffer.acquire());
+        outer.release();
+    }
+
+    @Test
+    public void threadsGetTheirOwnBuffer() throws InterruptedException {
+        LineBuffer buffer = LineBuffer.acquire();
+        AtomicReference<LineBuffer> other = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            other.set(LineBuffer.acquire());
+            other.get().release();
+        });
+        thread.start();
+        thread.join();
+        assertNotSame(buffer, other.get());
+        buffer.release();
+    }
+
+    @Test
+    public void printingReleasesTheBuffer() {
+        LineBuffer buffer = LineBuffer.acquire();
+        buffer.release();
+
+        TreePrinter<TestNode> printer = TestNode.builder().build();
+        TestNode tree = TestNode.random(100, new Random(15));
+        TestNode.print(printer, tree);
+        printer.printTrees(Arrays.asList(tree, tree), 80, new StringBuilder());
+        printer.printPages(tree, 20, new StringBuilder());
+        assertSame(buffer, LineBuffer.acquire());
+        buffer.release();
+
+        TreePrinter<TestNode> failing = TreePrinter.<TestNode>builder(n -> {
+            throw new IllegalStateException();
+        }, n -> n.left, n -> n.right).build();
+        try {
+            TestNode.print(failing, tree);
+            fail();
+        } catch (IllegalStateException e) {
+            assertSame(buffer, LineBuffer.acquire());
+            buffer.release();
+        }
+    }
+
+    // a label function that prints a tree itself, on the same thread, gets a buffer of its own
+    @Test
+    public void printingFromLabelFunction() {
+        TreePrinter<TestNode> inner = TestNode.builder().build();
+        TestNode small = new TestNode(1, new TestNode(0), null);
+        String smallOutput = TestNode.print(inner, small);
+        TreePrinter<TestNode> outer = TreePrinter.<TestNode>builder(
+                n -> TestNode.print(inner, small).equals(smallOutput) ? n.label() : "?", n -> n.left, n -> n.right).build();
+
+        TestNode tree = TestNode.random(2000, new Random(16));
+        assertEquals(TestNode.print(inner, tree), TestNode.print(outer, tree));
+    }
+}
@@ -0,0 +1,158 @@
+package tech.vanyo.treePrinter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LiveTreeViewTest {
+
+    private static final TreePrinter<TestNode> PRINTER = TestNode.builder().squareBranches(true).build();
+
+    // after each refresh, the screen shows what printTree prints, however the tree changed in between
+    @Test
+    public void screenShowsTheTreeAfterEachRefresh() {
+        Screen screen = new Screen();
+        LiveTreeView<TestNode> view = new LiveTreeView<>(PRINTER, screen);
+        Random random = new Random(23);
+        TestNode root = null;
+        for (int i = 0; i < 200; i++) {
+            root = insert(root, random.nextInt(1000));
+            view.refresh(root);
+            assertEquals(trimmedLines(TestNode.print(PRINTER, root)), screen.rows());
+        }
+    }
+
+    @Test
+    public void refreshSendsOnlyChanges() {
+        Screen screen = new Screen();
+        LiveTreeView<TestNode> view = new LiveTreeView<>(PRINTER, screen);
+        TestNode root = TestNode.random(200, new Random(29));
+        view.refresh(root);
+        long fullFrame = view.getCharsWritten();
+
+        view.refresh(root);
+        assertEquals(fullFrame, view.getCharsWritten());
+
+        // relabelling a node at the bottom of the tree only rewrites that bit of its row
+        TestNode leaf = root;
+        while (leaf.left != null || leaf.right != null) leaf = leaf.left != null ? leaf.left : leaf.right;
+        leaf.value = 7;
+        view.refresh(root);
+        assertTrue(view.getCharsWritten() - fullFrame < 40);
+        assertEquals(trimmedLines(TestNode.print(PRINTER, root)), screen.rows());
+    }
+
+    @Test
+    public void invalidateRedrawsEverything() {
+        Screen screen = new Screen();
+        LiveTreeView<TestNode> view = new LiveTreeView<>(PRINTER, screen);
+        TestNode root = TestNode.random(50, new Random(31));
+        view.refresh(root);
+        screen.clear();
+        view.invalidate();
+        view.refresh(root);
+        assertEquals(trimmedLines(TestNode.print(PRINTER, root)), screen.rows());
+    }
+
+    @Test
+    public void viewShowsTopLeftOfTheTree() {
+        Screen screen = new Screen();
+        LiveTreeView<TestNode> view = new LiveTreeView<>(PRINTER, screen, 5, 20);
+        TestNode root = TestNode.random(100, new Random(37));
+        view.refresh(root);
+        StringBuilder window = new StringBuilder();
+        PRINTER.printViewport(root, 0, 0, 5, 20, window);
+        assertEquals(trimmedLines(window.toString()), screen.rows());
+    }
+
+    private static TestNode insert(TestNode node, int value) {
+        if (node == null) return new TestNode(value);
+        if (value < node.value) node.left = insert(node.left, value);
+        else node.right = insert(node.right, value);
+        return node;
+    }
+
+    private static List<String> trimmedLines(String out) {
+        List<String> lines = new ArrayList<>();
+        for (String line : out.split(System.lineSeparator())) lines.add(trimEnd(line));
+        while (!lines.isEmpty() && lines.get(lines.size() - 1).isEmpty()) lines.remove(lines.size() - 1);
+        return lines;
+    }
+
+    private static String trimEnd(String s) {
+        int end = s.length();
+        while (end > 0 && s.charAt(end - 1) == ' ') end--;
+        return s.substring(0, end);
+    }
+
+    // terminal that understands the escape sequences the view sends: cursor position, clear screen and clear line
+    private static final class Screen implements Appendable {
+        private final List<StringBuilder> rows = new ArrayList<>();
+        private int row = 0;
+        private int col = 0;
+
+        @Override
+        public Appendable append(CharSequence csq) {
+            int i = 0;
+            while (i < csq.length()) {
+                char c = csq.charAt(i++);
+                if (c != '\u001b') {
+                    put(c);
+                    continue;
+                }
+                int start = ++i;    // past the '['
+                while (!Character.isLetter(csq.charAt(i))) i++;
+                String params = csq.subSequence(start, i).toString();
+                char command = csq.charAt(i++);
+                if (command == 'H') {
+                    String[] rowCol = params.isEmpty() ? new String[] {"1", "1"} : params.split(";");
+                    row = Integer.parseInt(rowCol[0]) - 1;
+                    col = Integer.parseInt(rowCol[1]) - 1;
+                } else if (command == 'J') {
+                    clear();
+                } else if (command == 'K') {
+                    StringBuilder line = line(row);
+                    if (line.length() > col) line.setLength(col);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) {
+            return append(csq.subSequence(start, end));
+        }
+
+        @Override
+        public Appendable append(char c) {
+            return append(String.valueOf(c));
+        }
+
+        void clear() {
+            rows.clear();
+        }
+
+        List<String> rows() {
+            List<String> shown = new ArrayList<>();
+            for (StringBuilder line : rows) shown.add(trimEnd(line.toString()));
+            while (!shown.isEmpty() && shown.get(shown.size() - 1).isEmpty()) shown.remove(shown.size() - 1);
+            return shown;
+        }
+
+        private void put(char c) {
+            StringBuilder line = line(row);
+            while (line.length() <= col) line.append(' ');
+            line.setCharAt(col++, c);
+        }
+
+        private StringBuilder line(int row) {
+            while (rows.size() <= row) rows.add(new StringBuilder());
+            return rows.get(row);
+        }
+    }
+}
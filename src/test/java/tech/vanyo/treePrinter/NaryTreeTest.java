@@ -0,0 +1,120 @@
+package tech.vanyo.treePrinter;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class NaryTreeTest {
+
+    private static final String NL = System.lineSeparator();
+
+    // the values of placeholder nodes of expected trees
+    private static final int PLACEHOLDER = -1;
+
+    private static final TreePrinter<TestNode> PRINTER = TreePrinter.<TestNode>naryBuilder(
+            n -> n.value == PLACEHOLDER ? "…" : n.label(), n -> n.children).build();
+
+    // a node with at most two children is laid out as by the binary printer with square, lrAgnostic branches
+    @Test
+    public void binaryShapedTreesMatchBinaryPrinter() {
+        TreePrinter<TestNode> binary = TestNode.builder().squareBranches(true).lrAgnostic(true).build();
+        TreePrinter<TestNode> nary = TreePrinter.naryBuilder(TestNode::label, n -> Arrays.asList(n.left, n.right))
+                .build();
+        Random random = new Random(17);
+        for (int i = 0; i < 50; i++) {
+            TestNode tree = TestNode.random(1 + random.nextInt(100), random);
+            assertEquals(TestNode.print(binary, tree), TestNode.print(nary, tree));
+        }
+    }
+
+    @Test
+    public void childrenAreDrawnUnderOneBranch() {
+        assertEquals(""
+                        + "   0   " + NL
+                        + "┌──┼──┐" + NL
+                        + "1  2  3" + NL,
+                TestNode.print(PRINTER, node(0, node(1), node(2), node(3))));
+    }
+
+    // the subtree of 3 is packed up against the subtree of 1 below the level of 2
+    @Test
+    public void subtreesArePackedByContour() {
+        TestNode tree = node(0,
+                node(1, node(4), node(5), node(6)),
+                node(2),
+                node(3, node(7), node(8), node(9)));
+        assertEquals(""
+                        + "        0        " + NL
+                        + "   ┌──┬─┴────┐   " + NL
+                        + "   1  2      3   " + NL
+                        + "┌──┼──┐   ┌──┼──┐" + NL
+                        + "4  5  6   7  8  9" + NL,
+                TestNode.print(PRINTER, tree));
+    }
+
+    @Test
+    public void nullChildrenAreSkipped() {
+        TestNode tree = node(0, null, node(1, node(4), null), null, node(2), node(3, null, null));
+        assertEquals(TestNode.print(PRINTER, node(0, node(1, node(4)), node(2), node(3))),
+                TestNode.print(PRINTER, tree));
+    }
+
+    @Test
+    public void subtreesBelowMaxDepthArePlaceholders() {
+        TestNode tree = node(0,
+                node(1, node(4), node(5), node(6)),
+                node(2),
+                node(3, node(7), node(8, node(10), node(11)), node(9)));
+        TestNode expected = node(0,
+                node(1, node(PLACEHOLDER), node(PLACEHOLDER), node(PLACEHOLDER)),
+                node(2),
+                node(3, node(PLACEHOLDER), node(PLACEHOLDER), node(PLACEHOLDER)));
+        assertEquals(TestNode.print(PRINTER, expected),
+                TestNode.print(PRINTER.toBuilder().maxDepth(2).build(), tree));
+    }
+
+    @Test
+    public void squareBranchesAndLrAgnosticAreIgnored() {
+        TestNode tree = node(0, node(1, node(4)), node(2), node(3, node(5), node(6, node(7))));
+        String expected = TestNode.print(PRINTER, tree);
+        for (int branches = 0; branches < 4; branches++) {
+            TreePrinter<TestNode> printer = PRINTER.toBuilder()
+                    .squareBranches(branches % 2 == 1)
+                    .lrAgnostic(branches >= 2)
+                    .build();
+            assertEquals(expected, TestNode.print(printer, tree));
+        }
+    }
+
+    @Test
+    public void unsupportedOptionsAreRejected() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            assertRejected(PRINTER.toBuilder().forkJoinPool(pool));
+            assertRejected(PRINTER.toBuilder().layoutCacheSize(100));
+            assertRejected(PRINTER.toBuilder().collapseRepeats(true));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void assertRejected(TreePrinter.Builder<TestNode> builder) {
+        try {
+            builder.build();
+            fail("built an n-ary printer with an option it doesn't support");
+        } catch (IllegalStateException expected) {
+            // as documented
+        }
+    }
+
+    private static TestNode node(int value, TestNode... children) {
+        TestNode node = new TestNode(value);
+        node.children.addAll(Arrays.asList(children));
+        return node;
+    }
+}
@@ -0,0 +1,116 @@
+package tech.vanyo.treePrinter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class PrintPagesTest {
+
+    private static final TreePrinter<TestNode> PRINTER = TestNode.builder().squareBranches(true).tspace(2).build();
+
+    // the strips of the pages side by side are the tree as printed by printTree, and lines are marked where they
+    // continue on another page
+    @Test
+    public void pagesAreStripsOfTheTree() {
+        Random random = new Random(5);
+        for (int pageWidth : new int[] {3, 10, 41}) {
+            for (int i = 0; i < 20; i++) {
+                TestNode tree = TestNode.random(1 + random.nextInt(80), random);
+                List<String> full = lines(TestNode.print(PRINTER, tree));
+                int width = 0;
+                for (String line : full) width = Math.max(width, line.length());
+
+                StringBuilder out = new StringBuilder();
+                PRINTER.printPages(tree, pageWidth, out);
+                List<String> pageLines = lines(out.toString());
+
+                int stripWidth = pageWidth - 2;
+                int pages = (width + stripWidth - 1) / stripWidth;
+                StringBuilder[] joined = new StringBuilder[full.size()];
+                for (int k = 0; k < full.size(); k++) joined[k] = new StringBuilder();
+                int next = 0;
+                for (int page = 0; page < pages; page++) {
+                    int left = page * stripWidth;
+                    int right = Math.min(left + stripWidth, width);     // the last page is only as wide as the tree
+                    String header = "page " + (page + 1) + " of " + pages + ", columns " + (left + 1) + "-" + right;
+                    assertEquals(header, pageLines.get(next++));
+                    for (int k = 0; k < full.size(); k++) {
+                        String line = pageLines.get(next++);
+                        String fullLine = full.get(k);
+                        assertEquals(right - left + 2, line.length());
+                        assertEquals(header + ", line " + k, hasLabelOrBranch(fullLine, 0, left) ? '«' : ' ',
+                                line.charAt(0));
+                        assertEquals(header + ", line " + k,
+                                hasLabelOrBranch(fullLine, right, fullLine.length()) ? '»' : ' ',
+                                line.charAt(line.length() - 1));
+                        joined[k].append(line, 1, line.length() - 1);
+                    }
+                    if (page < pages - 1) {
+                        for (int k = 0; k < 2; k++) assertEquals("", pageLines.get(next++));
+                    }
+                }
+                assertEquals(pageLines.size(), next);
+                for (int k = 0; k < full.size(); k++) {
+                    assertEquals(trimEnd(full.get(k)), trimEnd(joined[k].toString()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void treeNarrowerThanThePageIsOnePage() {
+        TestNode tree = new TestNode(2, new TestNode(1), new TestNode(3));
+        StringBuilder out = new StringBuilder();
+        PRINTER.printPages(tree, 80, out);
+        List<String> pageLines = lines(out.toString());
+        List<String> full = lines(TestNode.print(PRINTER, tree));
+        assertEquals("page 1 of 1, columns 1-5", pageLines.get(0));
+        assertEquals(full.size() + 1, pageLines.size());
+        for (int k = 0; k < full.size(); k++) {
+            assertEquals(" " + trimEnd(full.get(k)), trimEnd(pageLines.get(k + 1)));
+        }
+    }
+
+    @Test
+    public void emptyTreeHasNoPages() {
+        StringBuilder out = new StringBuilder();
+        PRINTER.printPages(null, 10, out);
+        assertEquals("", out.toString());
+    }
+
+    @Test
+    public void pageWidthMustLeaveRoomForTheMarkers() {
+        try {
+            PRINTER.printPages(new TestNode(1), 2, new StringBuilder());
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("pageWidth must be at least 3, was 2", e.getMessage());
+        }
+    }
+
+    private static boolean hasLabelOrBranch(String line, int from, int to) {
+        for (int i = from; i < Math.min(to, line.length()); i++) {
+            if (line.charAt(i) != ' ') return true;
+        }
+        return false;
+    }
+
+    // the lines of the output, each ended by a line separator
+    private static List<String> lines(String out) {
+        List<String> lines = new ArrayList<>(Arrays.asList(out.split(System.lineSeparator(), -1)));
+        lines.remove(lines.size() - 1);
+        return lines;
+    }
+
+    private static String trimEnd(String s) {
+        int end = s.length();
+        while (end > 0 && s.charAt(end - 1) == ' ') end--;
+        return s.substring(0, end);
+    }
+}
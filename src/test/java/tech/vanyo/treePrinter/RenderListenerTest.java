@@ -0,0 +1,94 @@
+package tech.vanyo.treePrinter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RenderListenerTest {
+
+    private final List<RenderMetrics> reported = new ArrayList<>();
+
+    @Test
+    public void reportsSizeOfTreeAndOutput() {
+        TestNode tree = TestNode.random(200, new Random(12));
+        TreePrinter<TestNode> printer = TestNode.builder().renderListener(reported::add).build();
+        String output = TestNode.print(printer, tree);
+
+        assertEquals(1, reported.size());
+        RenderMetrics metrics = reported.get(0);
+        String[] lines = output.split(System.lineSeparator());
+        assertEquals(1, metrics.getTreeCount());
+        assertEquals(200, metrics.getNodeCount());
+        assertEquals(lines.length, metrics.getRows());
+        assertEquals(lines[0].length(), metrics.getColumns());
+        assertEquals(output.length(), metrics.getCharsWritten());
+        assertTrue(metrics.getTotalNanos() > 0);
+    }
+
+    @Test
+    public void reportsEachCall() {
+        HistogramRenderListener histograms = new HistogramRenderListener();
+        TreePrinter<TestNode> printer = TestNode.builder().renderListener(histograms).build();
+        Random random = new Random(13);
+        List<TestNode> trees = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            TestNode tree = TestNode.random(1 + random.nextInt(50), random);
+            trees.add(tree);
+            TestNode.print(printer, tree);
+        }
+        printer.printTrees(trees, 120, new StringBuilder());
+        printer.printTrees(trees.iterator(), 120, new StringBuilder());
+        TestNode tree = trees.get(0);
+        printer.render(tree);
+        printer.renderIndexed(printer.snapshot(tree));
+        printer.printIndexed(printer.snapshot(tree), new StringBuilder());
+        printer.printViewport(tree, 0, 0, 5, 10, new StringBuilder());
+        printer.printPages(tree, 10, new StringBuilder());
+        assertEquals(17, histograms.getNodeCount().getCount());
+        assertEquals(17, histograms.getLabelNanos().getCount());
+    }
+
+    /*
+        Label time is estimated from a sample of the calls, and kept out of layout time.  The label function sleeps
+        for far longer than laying out a node takes, so label time dominates however loaded the machine is; only
+        the sampling error (a few per cent) is left in layout time.
+     */
+    @Test
+    public void separatesLabelTimeFromLayoutTime() {
+        long[] spent = {0};
+        TreePrinter<TestNode> printer = TreePrinter.<TestNode>builder(n -> {
+            long start = System.nanoTime();
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            spent[0] += System.nanoTime() - start;
+            return n.label();
+        }, n -> n.left, n -> n.right).renderListener(reported::add).build();
+        TestNode.print(printer, TestNode.random(200, new Random(14)));
+
+        RenderMetrics metrics = reported.get(0);
+        assertTrue(metrics.toString(), metrics.getLabelNanos() > spent[0] / 4);
+        assertTrue(metrics.toString(), metrics.getLabelNanos() > metrics.getLayoutNanos());
+    }
+
+    @Test
+    public void histogramPercentiles() {
+        HistogramRenderListener.Histogram histogram = new HistogramRenderListener.Histogram();
+        for (long value : Arrays.asList(0L, 1L, 5L, 100L, 1000L)) histogram.record(value);
+        assertEquals(5, histogram.getCount());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(0, histogram.valueAtPercentile(0.1));
+        assertEquals(7, histogram.valueAtPercentile(0.6));
+        assertEquals(1000, histogram.valueAtPercentile(1));
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+    }
+}
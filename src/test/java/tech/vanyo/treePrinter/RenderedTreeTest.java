@@ -0,0 +1,262 @@
+package tech.vanyo.treePrinter;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RenderedTreeTest {
+
+    // offset of the line starts, following the six int header
+    private static final int LINE_STARTS = 24;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readPrintsAsTheTree() {
+        Random random = new Random(113);
+        for (int branches = 0; branches < 3; branches++) {
+            TreePrinter<TestNode> printer = TreePrinter.<TestNode>builder(
+                    n -> n.value % 4 == 0 ? "漢" + n.value : n.label(), n -> n.left, n -> n.right)
+                    .squareBranches(branches > 0)
+                    .lrAgnostic(branches == 2)
+                    .labelWidth(LabelWidth.DISPLAY)
+                    .build();
+            for (int i = 0; i < 20; i++) {
+                TestNode tree = TestNode.random(random.nextInt(200), random);
+                RenderedTree read = RenderedTree.read(printer.render(tree).toByteBuffer());
+                assertEquals(TestNode.print(printer, tree), print(read));
+            }
+        }
+    }
+
+    // drawings with branches to many children, and with collapsed repeats, pass the checks made as they're read
+    @Test
+    public void naryAndCollapsedDrawings() {
+        Random random = new Random(139);
+        TreePrinter<TestNode> nary = TreePrinter.<TestNode>naryBuilder(TestNode::label, n -> n.children).build();
+        TreePrinter<TestNode> collapsing = TestNode.builder().collapseRepeats(true).build();
+        for (int i = 0; i < 20; i++) {
+            TestNode tree = nary(4, random);
+            assertEquals(TestNode.print(nary, tree), print(RenderedTree.read(nary.render(tree).toByteBuffer())));
+            TestNode subtree = TestNode.random(1 + random.nextInt(10), random);
+            tree = new TestNode(0, subtree, new TestNode(1, subtree, subtree));
+            assertEquals(TestNode.print(collapsing, tree),
+                    print(RenderedTree.read(collapsing.render(tree).toByteBuffer())));
+        }
+    }
+
+    @Test
+    public void truncatedLinesAreKept() {
+        TreePrinter<TestNode> printer = TestNode.builder().maxWidth(30).build();
+        TestNode tree = TestNode.random(100, new Random(127));
+        String expected = TestNode.print(printer, tree);
+        assertTrue(expected.contains("…"));
+
+        RenderedTree read = RenderedTree.read(printer.render(tree).toByteBuffer());
+        assertEquals(30, read.getWidth());
+        assertEquals(expected, print(read));
+    }
+
+    @Test
+    public void drawingsBackToBack() {
+        List<TestNode> trees = trees(new Random(131));
+        List<ByteBuffer> stored = new ArrayList<>();
+        int length = 0;
+        for (TestNode tree : trees) {
+            ByteBuffer bytes = printer(tree).render(tree).toByteBuffer();
+            stored.add(bytes);
+            length += bytes.remaining();
+        }
+        ByteBuffer all = ByteBuffer.allocate(length);
+        for (ByteBuffer bytes : stored) all.put(bytes);
+        all.flip();
+
+        for (TestNode tree : trees) {
+            assertEquals(TestNode.print(printer(tree), tree), print(RenderedTree.read(all)));
+        }
+        assertFalse(all.hasRemaining());
+    }
+
+    @Test
+    public void readFromMappedFile() throws IOException {
+        List<TestNode> trees = trees(new Random(137));
+        File file = folder.newFile();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            for (TestNode tree : trees) printer(tree).render(tree).writeTo(channel);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            for (TestNode tree : trees) {
+                assertEquals(TestNode.print(printer(tree), tree), print(RenderedTree.read(mapped)));
+            }
+            assertFalse(mapped.hasRemaining());
+        }
+    }
+
+    @Test
+    public void truncatedHeader() {
+        ByteBuffer bytes = stored();
+        bytes.limit(20);
+        assertCorrupt(bytes);
+        assertCorrupt(ByteBuffer.allocate(0));
+    }
+
+    @Test
+    public void truncatedBody() {
+        ByteBuffer bytes = stored();
+        bytes.limit(bytes.limit() - 1);
+        assertCorrupt(bytes);
+    }
+
+    @Test
+    public void badMagic() {
+        ByteBuffer bytes = stored();
+        bytes.putInt(0, 0x54504402);
+        assertCorrupt(bytes);
+    }
+
+    @Test
+    public void badLineStart() {
+        ByteBuffer bytes = stored();
+        bytes.putInt(LINE_STARTS + 4, -1);
+        assertCorrupt(bytes);
+        bytes = stored();
+        bytes.putInt(LINE_STARTS, 1);
+        assertCorrupt(bytes);
+    }
+
+    @Test
+    public void badKind() {
+        ByteBuffer bytes = stored();
+        bytes.putInt(kinds(bytes), 99);
+        assertCorrupt(bytes);
+    }
+
+    @Test
+    public void badLabelIndex() {
+        ByteBuffer bytes = stored();
+        int labelCount = bytes.getInt(20);
+        // the first item, on the first line, is the root's label
+        bytes.putInt(labelNumbers(bytes), labelCount);
+        assertCorrupt(bytes);
+        bytes = stored();
+        bytes.putInt(labelNumbers(bytes), -1);
+        assertCorrupt(bytes);
+    }
+
+    @Test
+    public void badTextOffset() {
+        ByteBuffer bytes = stored();
+        int labelCount = bytes.getInt(20);
+        bytes.putInt(textOffsets(bytes) + 4 * labelCount, Integer.MAX_VALUE);
+        assertCorrupt(bytes);
+        bytes = stored();
+        bytes.putInt(textOffsets(bytes) + 4, -1);
+        assertCorrupt(bytes);
+    }
+
+    @Test
+    public void columnOutOfBounds() {
+        ByteBuffer bytes = stored();
+        bytes.putInt(columns(bytes), bytes.getInt(8));
+        assertCorrupt(bytes);
+        bytes = stored();
+        bytes.putInt(columns(bytes), -1000);
+        assertCorrupt(bytes);
+    }
+
+    @Test
+    public void columnsOutOfOrder() {
+        ByteBuffer bytes = stored();
+        // the last line holds several labels; move its second onto its first
+        int height = bytes.getInt(12);
+        int first = bytes.getInt(LINE_STARTS + 4 * (height - 1));
+        assertTrue(bytes.getInt(LINE_STARTS + 4 * height) - first > 1);
+        bytes.putInt(columns(bytes) + 4 * (first + 1), bytes.getInt(columns(bytes) + 4 * first));
+        assertCorrupt(bytes);
+    }
+
+    // a complete tree of 15 nodes, whose last line holds eight labels
+    private static ByteBuffer stored() {
+        return TestNode.builder().build().render(complete(4, 1)).toByteBuffer();
+    }
+
+    private static int columns(ByteBuffer bytes) {
+        return LINE_STARTS + 4 * (bytes.getInt(12) + 1);
+    }
+
+    private static int kinds(ByteBuffer bytes) {
+        return columns(bytes) + 4 * bytes.getInt(16);
+    }
+
+    private static int labelNumbers(ByteBuffer bytes) {
+        return kinds(bytes) + 8 * bytes.getInt(16);
+    }
+
+    private static int textOffsets(ByteBuffer bytes) {
+        return labelNumbers(bytes) + 4 * bytes.getInt(16);
+    }
+
+    private static void assertCorrupt(ByteBuffer bytes) {
+        try {
+            RenderedTree.read(bytes);
+            fail("read a corrupt drawing");
+        } catch (IllegalArgumentException expected) {
+            // as documented
+        }
+    }
+
+    private static String print(RenderedTree tree) {
+        StringBuilder out = new StringBuilder();
+        tree.print(out);
+        return out.toString();
+    }
+
+    // trees printed in a few different ways (see printer), including an empty tree
+    private static List<TestNode> trees(Random random) {
+        List<TestNode> trees = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            trees.add(i == 5 ? null : TestNode.random(1 + random.nextInt(100), random));
+        }
+        return trees;
+    }
+
+    private static TreePrinter<TestNode> printer(TestNode tree) {
+        int style = tree == null ? 0 : tree.value % 4;
+        return TestNode.builder()
+                .squareBranches(style > 0)
+                .lrAgnostic(style == 2)
+                .maxWidth(style == 3 ? 40 : Integer.MAX_VALUE)
+                .build();
+    }
+
+    // tree of the given depth whose nodes have up to four children each
+    private static TestNode nary(int depth, Random random) {
+        TestNode node = new TestNode(random.nextInt(1000));
+        if (depth > 0) {
+            for (int i = random.nextInt(5); i > 0; i--) node.children.add(nary(depth - 1, random));
+        }
+        return node;
+    }
+
+    private static TestNode complete(int depth, int first) {
+        if (depth == 0) return null;
+        return new TestNode(first, complete(depth - 1, 2 * first), complete(depth - 1, 2 * first + 1));
+    }
+}
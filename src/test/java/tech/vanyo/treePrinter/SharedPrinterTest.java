@@ -0,0 +1,61 @@
+package tech.vanyo.treePrinter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// one printer shared by many threads, each printing its own trees
+public class SharedPrinterTest {
+
+    @Test
+    public void threadsPrintingAtOnceGetTheirOwnOutput() throws Exception {
+        TreePrinter<TestNode> printer = TestNode.builder().squareBranches(true).build();
+        Random random = new Random(17);
+        List<TestNode> trees = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            TestNode tree = TestNode.random(1 + random.nextInt(500), random);
+            trees.add(tree);
+            expected.add(TestNode.print(printer, tree));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                int first = thread;
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        int tree = (first + i) % trees.size();
+                        assertEquals(expected.get(tree), TestNode.print(printer, trees.get(tree)));
+                    }
+                }));
+            }
+            for (Future<?> result : results) result.get();
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void builderChangesDontAffectBuiltPrinters() {
+        TreePrinter.Builder<TestNode> builder = TestNode.builder();
+        TreePrinter<TestNode> printer = builder.build();
+        TestNode tree = TestNode.random(20, new Random(18));
+        String before = TestNode.print(printer, tree);
+        builder.squareBranches(true).hspace(4);
+        assertEquals(before, TestNode.print(printer, tree));
+        assertEquals(TestNode.print(printer.toBuilder().squareBranches(true).hspace(4).build(), tree),
+                TestNode.print(builder.build(), tree));
+    }
+}
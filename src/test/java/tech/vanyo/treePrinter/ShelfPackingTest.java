@@ -0,0 +1,103 @@
+package tech.vanyo.treePrinter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ShelfPackingTest {
+
+    @Test
+    public void packsEachItemIntoTheFirstShelfWithRoom() {
+        Random random = new Random(41);
+        for (int i = 0; i < 200; i++) {
+            int n = random.nextInt(300);
+            int capacity = 1 + random.nextInt(100);
+            int gap = random.nextInt(3);
+            int[] widths = new int[n];
+            for (int k = 0; k < n; k++) widths[k] = 1 + random.nextInt(capacity + 10);
+            int[] order = shuffled(n, random);
+            assertArrayEquals(firstFit(widths, order, capacity, gap),
+                    ShelfPacking.pack(widths, order, capacity, gap));
+        }
+    }
+
+    // every tree is printed once, in rows narrower than the line width, and mixing tall and short trees takes
+    // fewer lines than printing them in the order given
+    @Test
+    public void printTreesFitsRowsToLineWidth() {
+        Random random = new Random(43);
+        List<TestNode> trees = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            TestNode tree = TestNode.random(i % 2 == 0 ? 40 : 3, random);
+            offset(tree, 1000 * (i + 1));
+            trees.add(tree);
+        }
+        int lineWidth = 120;
+        String greedy = printTrees(RowPacking.GREEDY, trees, lineWidth);
+        String shelf = printTrees(RowPacking.SHELF, trees, lineWidth);
+        String keepOrder = printTrees(RowPacking.SHELF_KEEP_ORDER, trees, lineWidth);
+
+        for (String out : Arrays.asList(shelf, keepOrder)) {
+            String[] lines = out.split(System.lineSeparator());
+            for (String line : lines) assertTrue(line.length() < lineWidth);
+            assertEquals(labels(greedy), labels(out));
+            assertTrue(lines.length < greedy.split(System.lineSeparator()).length);
+        }
+        assertEquals(shelf.split(System.lineSeparator()).length, keepOrder.split(System.lineSeparator()).length);
+    }
+
+    private static String printTrees(RowPacking rowPacking, List<TestNode> trees, int lineWidth) {
+        StringBuilder out = new StringBuilder();
+        TestNode.builder().rowPacking(rowPacking).build().printTrees(trees, lineWidth, out);
+        return out.toString();
+    }
+
+    // the labels printed, sorted
+    private static List<Integer> labels(String out) {
+        List<Integer> labels = new ArrayList<>();
+        for (String token : out.split("[^0-9]+")) {
+            if (!token.isEmpty()) labels.add(Integer.parseInt(token));
+        }
+        labels.sort(null);
+        return labels;
+    }
+
+    private static void offset(TestNode node, int offset) {
+        if (node == null) return;
+        node.value += offset;
+        offset(node.left, offset);
+        offset(node.right, offset);
+    }
+
+    private static int[] firstFit(int[] widths, int[] order, int capacity, int gap) {
+        int[] shelf = new int[widths.length];
+        List<Integer> room = new ArrayList<>();
+        for (int item : order) {
+            int s = 0;
+            while (s < room.size() && room.get(s) < widths[item] + gap) s++;
+            if (s == room.size()) room.add(capacity - widths[item]);
+            else room.set(s, room.get(s) - widths[item] - gap);
+            shelf[item] = s;
+        }
+        return shelf;
+    }
+
+    private static int[] shuffled(int n, Random random) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        for (int i = n - 1; i > 0; i--) {
+            int k = random.nextInt(i + 1);
+            int t = order[i];
+            order[i] = order[k];
+            order[k] = t;
+        }
+        return order;
+    }
+}
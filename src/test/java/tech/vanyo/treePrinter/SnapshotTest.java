@@ -0,0 +1,134 @@
+package tech.vanyo.treePrinter;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SnapshotTest {
+
+    private static final TreePrinter<TestNode> PRINTER = TestNode.builder().build();
+
+    @Test
+    public void snapshotPrintsAsTheTree() {
+        Random random = new Random(47);
+        for (int i = 0; i < 50; i++) {
+            TestNode tree = TestNode.random(random.nextInt(200), random);
+            StringBuilder out = new StringBuilder();
+            PRINTER.printIndexed(PRINTER.snapshot(tree), out);
+            assertEquals(TestNode.print(PRINTER, tree), out.toString());
+        }
+    }
+
+    // shared nodes are copied once, and printed wherever they occur, as printTree prints them
+    @Test
+    public void sharedNodesAreCopiedOnce() {
+        TestNode shared = new TestNode(5, new TestNode(6), new TestNode(7));
+        TestNode tree = new TestNode(1, new TestNode(2, shared, null), new TestNode(3, shared, shared));
+        ArrayTree snapshot = PRINTER.snapshot(tree);
+        assertEquals(6, snapshot.size());
+
+        StringBuilder out = new StringBuilder();
+        PRINTER.printIndexed(snapshot, out);
+        assertEquals(TestNode.print(PRINTER, tree), out.toString());
+    }
+
+    @Test
+    public void cycleIsRejected() {
+        TestNode child = new TestNode(2);
+        TestNode tree = new TestNode(1, child, null);
+        child.right = tree;
+        try {
+            PRINTER.snapshot(tree);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("tree has a cycle", e.getMessage());
+        }
+    }
+
+    @Test
+    public void snapshotLargerThanMaxSizeIsRejected() {
+        TestNode tree = TestNode.spine(101);
+        assertEquals(101, PRINTER.snapshot(tree, 101).size());
+        try {
+            PRINTER.snapshot(tree, 100);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("tree has more than 100 nodes", e.getMessage());
+        }
+    }
+
+    // a snapshot too large is rejected while the lock is held, and the lock is released
+    @Test
+    public void lockIsReleasedWhenSnapshotIsTooLarge() {
+        ReentrantLock lock = new ReentrantLock();
+        TestNode tree = TestNode.spine(101);
+        StringBuilder out = new StringBuilder();
+        PRINTER.printSnapshot(tree, lock, 101, out);
+        assertEquals(TestNode.print(PRINTER, tree), out.toString());
+        try {
+            PRINTER.printSnapshot(tree, lock, 100, new StringBuilder());
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("tree has more than 100 nodes", e.getMessage());
+        }
+        assertFalse(lock.isLocked());
+        try {
+            PRINTER.renderSnapshot(tree, lock, 100);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("tree has more than 100 nodes", e.getMessage());
+        }
+        assertFalse(lock.isLocked());
+    }
+
+    // the lock is held while the snapshot is taken, and released before it's printed
+    @Test
+    public void printSnapshotHoldsTheLockOnlyForTheSnapshot() {
+        ReentrantLock lock = new ReentrantLock();
+        boolean[] lockedWhileReading = new boolean[1];
+        boolean[] lockedWhilePrinting = new boolean[1];
+        TreePrinter<TestNode> printer = TreePrinter.<TestNode>builder(n -> {
+            lockedWhileReading[0] = lock.isHeldByCurrentThread();
+            return n.label();
+        }, n -> n.left, n -> n.right).build();
+        TestNode tree = TestNode.random(20, new Random(53));
+
+        Appendable out = new Appendable() {
+            final StringBuilder text = new StringBuilder();
+
+            @Override
+            public Appendable append(CharSequence csq) {
+                lockedWhilePrinting[0] |= lock.isHeldByCurrentThread();
+                text.append(csq);
+                return this;
+            }
+
+            @Override
+            public Appendable append(CharSequence csq, int start, int end) {
+                return append(csq.subSequence(start, end));
+            }
+
+            @Override
+            public Appendable append(char c) {
+                return append(String.valueOf(c));
+            }
+
+            @Override
+            public String toString() {
+                return text.toString();
+            }
+        };
+        printer.printSnapshot(tree, lock, out);
+
+        assertTrue(lockedWhileReading[0]);
+        assertFalse(lockedWhilePrinting[0]);
+        assertFalse(lock.isLocked());
+        assertEquals(TestNode.print(PRINTER, tree), out.toString());
+    }
+}
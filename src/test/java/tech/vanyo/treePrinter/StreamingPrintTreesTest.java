@@ -0,0 +1,124 @@
+package tech.vanyo.treePrinter;
+
+import org.junit.Test;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StreamingPrintTreesTest {
+
+    private static final TreePrinter<TestNode> PRINTER = TestNode.builder().build();
+
+    // each row is written and flushed once the first tree of the next row has been taken, and before any more are
+    @Test
+    public void rowsAreWrittenBeforeTheNextTreesAreTaken() {
+        List<TestNode> trees = trees(200, new Random(83));
+        int[] taken = {0};
+        Iterator<TestNode> iterator = new Iterator<TestNode>() {
+            @Override
+            public boolean hasNext() {
+                return taken[0] < trees.size();
+            }
+
+            @Override
+            public TestNode next() {
+                return trees.get(taken[0]++);
+            }
+        };
+
+        StringBuilder text = new StringBuilder();
+        List<Integer> takenAtFlush = new ArrayList<>();
+        List<Integer> printedAtFlush = new ArrayList<>();
+        Writer out = new Writer() {
+            @Override
+            public void write(char[] chars, int offset, int length) {
+                text.append(chars, offset, length);
+            }
+
+            @Override
+            public void flush() {
+                takenAtFlush.add(taken[0]);
+                printedAtFlush.add(treesIn(text.toString()));
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        PRINTER.printTrees(iterator, 60, out);
+
+        assertTrue(takenAtFlush.size() > 10);
+        for (int i = 0; i < takenAtFlush.size(); i++) {
+            // all the trees taken but the last are printed, and the last is the first of the next row
+            assertEquals(takenAtFlush.get(i) - 1, (int) printedAtFlush.get(i));
+        }
+        assertEquals(trees.size(), treesIn(text.toString()));
+    }
+
+    @Test
+    public void streamPrintsAsList() {
+        Random random = new Random(89);
+        for (int lineWidth : new int[] {20, 80, 300}) {
+            List<TestNode> trees = trees(100, random);
+            StringBuilder expected = new StringBuilder();
+            PRINTER.printTrees(trees, lineWidth, expected);
+            StringBuilder fromStream = new StringBuilder();
+            PRINTER.printTrees(trees.stream(), lineWidth, fromStream);
+            assertEquals(expected.toString(), fromStream.toString());
+        }
+    }
+
+    // the trees of a long stream are printed as they're generated, rather than collected first
+    @Test
+    public void generatedStreamIsPrintedAsItGoes() {
+        StringBuilder out = new StringBuilder();
+        int[] generated = {0};
+        int[] printedHalfway = {0};
+        Stream<TestNode> trees = Stream.generate(() -> {
+            int i = generated[0]++;
+            if (i == 10000) printedHalfway[0] = out.length();
+            return new TestNode(i % 1000);
+        }).limit(20000);
+        PRINTER.printTrees(trees, 100, out);
+
+        assertEquals(20000, generated[0]);
+        assertTrue(printedHalfway[0] > out.length() / 3);
+    }
+
+    // random trees whose labels are numbered from tree to tree, so the trees printed can be counted
+    private static List<TestNode> trees(int count, Random random) {
+        List<TestNode> trees = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            TestNode tree = new TestNode(i, TestNode.random(random.nextInt(4), random), null);
+            trees.add(tree);
+            number(tree.left, 1000 * (i + 1));
+        }
+        return trees;
+    }
+
+    private static void number(TestNode node, int offset) {
+        if (node == null) return;
+        node.value += offset;
+        number(node.left, offset);
+        number(node.right, offset);
+    }
+
+    // number of trees printed in text, i.e. of labels less than 1000 (the roots)
+    private static int treesIn(String text) {
+        int count = 0;
+        Matcher matcher = Pattern.compile("[0-9]+").matcher(text);
+        while (matcher.find()) {
+            if (Integer.parseInt(matcher.group()) < 1000) count++;
+        }
+        return count;
+    }
+}
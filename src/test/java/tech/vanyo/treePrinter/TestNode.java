@@ -0,0 +1,62 @@
+package tech.vanyo.treePrinter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// node of the trees printed by the tests, with a left and right child, or any number of children
+final class TestNode {
+
+    int value;
+    TestNode left;
+    TestNode right;
+    final List<TestNode> children = new ArrayList<>();
+
+    TestNode(int value) {
+        this.value = value;
+    }
+
+    TestNode(int value, TestNode left, TestNode right) {
+        this.value = value;
+        this.left = left;
+        this.right = right;
+    }
+
+    String label() {
+        return "" + value;
+    }
+
+    // binary search tree of the values 1 .. size, of random shape
+    static TestNode random(int size, Random random) {
+        return random(1, size, random);
+    }
+
+    private static TestNode random(int first, int last, Random random) {
+        if (first > last) return null;
+        int value = first + random.nextInt(last - first + 1);
+        return new TestNode(value, random(first, value - 1, random), random(value + 1, last, random));
+    }
+
+    // nodes 0 .. size - 1, each the left or right child (alternately) of the one before
+    static TestNode spine(int size) {
+        TestNode root = new TestNode(0);
+        TestNode node = root;
+        for (int i = 1; i < size; i++) {
+            TestNode child = new TestNode(i);
+            if (i % 2 == 0) node.left = child;
+            else node.right = child;
+            node = child;
+        }
+        return root;
+    }
+
+    static TreePrinter.Builder<TestNode> builder() {
+        return TreePrinter.builder(TestNode::label, n -> n.left, n -> n.right);
+    }
+
+    static String print(TreePrinter<TestNode> printer, TestNode root) {
+        StringBuilder out = new StringBuilder();
+        printer.printTree(root, out);
+        return out.toString();
+    }
+}
@@ -0,0 +1,119 @@
+package tech.vanyo.treePrinter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+
+public class TreeDrawingTest {
+
+    // labels with wide chars, and with combining marks, which LabelWidth.DISPLAY counts as two and no columns
+    private static final Function<TestNode, String> DISPLAY_LABEL = n -> n.value % 3 == 0 ? "漢" + n.value
+            : n.value % 3 == 1 ? "é" + n.value : "字字";
+
+    @Test
+    public void viewportClipsByDisplayWidth() {
+        TestNode tree = TestNode.random(30, new Random(9));
+        TreePrinter<TestNode> printer = displayPrinter().build();
+        String[] full = lines(TestNode.print(printer, tree));
+        int fullWidth = LabelWidths.displayWidth(full[0]);
+        for (int width = 1; width <= 9; width += 4) {
+            for (int left = 0; left < fullWidth; left++) {
+                StringBuilder out = new StringBuilder();
+                printer.printViewport(tree, 0, left, full.length, width, out);
+                String[] viewport = lines(out.toString());
+                assertEquals(full.length, viewport.length);
+                int columns = Math.min(width, fullWidth - left);
+                for (int i = 0; i < full.length; i++) {
+                    assertEquals("line " + i + " at " + left, clip(full[i], left, left + columns), viewport[i]);
+                    assertEquals(columns, LabelWidths.displayWidth(viewport[i]));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void maxWidthCutsByDisplayWidth() {
+        TestNode tree = TestNode.random(30, new Random(10));
+        String[] full = lines(TestNode.print(displayPrinter().build(), tree));
+        for (int maxWidth = 2; maxWidth < 40; maxWidth++) {
+            String[] cut = lines(TestNode.print(displayPrinter().maxWidth(maxWidth).build(), tree));
+            for (int i = 0; i < full.length; i++) {
+                int fullWidth = LabelWidths.displayWidth(full[i]);
+                int textWidth = LabelWidths.displayWidth(full[i].replaceAll(" +$", ""));
+                if (textWidth <= maxWidth) {
+                    assertEquals(clip(full[i], 0, Math.min(fullWidth, maxWidth)), cut[i]);
+                } else {
+                    assertEquals(clip(full[i], 0, maxWidth - 1) + "…", cut[i]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void ansiLabelsAreClippedByChar() {
+        TestNode tree = TestNode.random(20, new Random(11));
+        TreePrinter<TestNode> printer = TreePrinter.<TestNode>builder(n -> "\u001b[31m" + n.value + "\u001b[0m",
+                n -> n.left, n -> n.right).build();
+        String[] full = lines(TestNode.print(printer, tree));
+        int fullWidth = LabelWidths.ansiWidth(full[0]);
+        for (int left = 0; left < fullWidth; left += 3) {
+            StringBuilder out = new StringBuilder();
+            printer.printViewport(tree, 0, left, full.length, 5, out);
+            for (String line : lines(out.toString())) {
+                assertEquals(Math.min(5, fullWidth - left), LabelWidths.ansiWidth(line));
+            }
+        }
+    }
+
+    private static TreePrinter.Builder<TestNode> displayPrinter() {
+        return TreePrinter.<TestNode>builder(DISPLAY_LABEL, n -> n.left, n -> n.right)
+                .squareBranches(true)
+                .labelWidth(LabelWidth.DISPLAY);
+    }
+
+    private static String[] lines(String output) {
+        return output.split(System.lineSeparator());
+    }
+
+    /*
+        Columns from (inclusive) to to (exclusive) of a line without escape sequences, with wide chars cut in half
+        replaced by a space, as the printer clips them.
+     */
+    private static String clip(String line, int from, int to) {
+        // the text of each column; a wide char's second column is empty, and zero width chars join the one before
+        List<String> columns = new ArrayList<>();
+        int i = 0;
+        while (i < line.length()) {
+            int codePoint = line.codePointAt(i);
+            String text = new String(Character.toChars(codePoint));
+            int width = LabelWidths.codePointWidth(codePoint);
+            if (width == 0) {
+                int last = columns.size() - 1;
+                if (columns.get(last).isEmpty()) last--;
+                columns.set(last, columns.get(last) + text);
+            } else {
+                columns.add(text);
+                if (width == 2) columns.add("");
+            }
+            i += Character.charCount(codePoint);
+        }
+
+        StringBuilder clipped = new StringBuilder();
+        for (int col = from; col < to; col++) {
+            boolean wide = col + 1 < columns.size() && columns.get(col + 1).isEmpty();
+            if (columns.get(col).isEmpty()) {
+                if (col == from) clipped.append(' ');
+            } else if (wide && col == to - 1) {
+                clipped.append(' ');
+            } else {
+                clipped.append(columns.get(col));
+            }
+        }
+        return clipped.toString();
+    }
+}
@@ -0,0 +1,94 @@
+package tech.vanyo.treePrinter;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+
+public class TreeLimitsTest {
+
+    // subtrees at maxDepth are each printed as a single placeholder node, in every branch style
+    @Test
+    public void subtreesAtMaxDepthArePlaceholders() {
+        Random random = new Random(97);
+        for (int branches = 0; branches < 3; branches++) {
+            for (int i = 0; i < 30; i++) {
+                TestNode tree = TestNode.random(1 + random.nextInt(60), random);
+                for (int maxDepth = 0; maxDepth <= 4; maxDepth++) {
+                    TreePrinter<TestNode> limited = builder(branches).maxDepth(maxDepth).build();
+                    assertEquals("maxDepth " + maxDepth + ", branches " + branches,
+                            print(branches, cut(tree, maxDepth), n -> "…"), TestNode.print(limited, tree));
+                }
+            }
+        }
+    }
+
+    // levels 0, 1, 2 and 3 of a complete tree hold 1, 3, 7 and 15 nodes in all; only whole levels are kept
+    @Test
+    public void maxNodesKeepsWholeLevels() {
+        TestNode tree = complete(5, 1);
+        int[] maxNodes = {0, 1, 2, 3, 6, 7, 14, 15, 30, 31, 1000};
+        int[] depth = {0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5};
+        for (int branches = 0; branches < 3; branches++) {
+            for (int i = 0; i < maxNodes.length; i++) {
+                TreePrinter<TestNode> limited = builder(branches).maxNodes(maxNodes[i]).build();
+                assertEquals("maxNodes " + maxNodes[i], print(branches, cut(tree, depth[i]), n -> "…"),
+                        TestNode.print(limited, tree));
+            }
+        }
+    }
+
+    // the nearer of the two limits applies
+    @Test
+    public void maxDepthAndMaxNodesTogether() {
+        TestNode tree = complete(5, 1);
+        TreePrinter<TestNode> printer = builder(0).maxDepth(2).maxNodes(14).build();
+        assertEquals(print(0, cut(tree, 2), n -> "…"), TestNode.print(printer, tree));
+        printer = builder(0).maxDepth(4).maxNodes(6).build();
+        assertEquals(print(0, cut(tree, 2), n -> "…"), TestNode.print(printer, tree));
+    }
+
+    // the elision label is given the root of the subtree left out
+    @Test
+    public void customElisionLabel() {
+        Random random = new Random(101);
+        for (int branches = 0; branches < 3; branches++) {
+            TestNode tree = TestNode.random(200, random);
+            TreePrinter<TestNode> limited = builder(branches)
+                    .maxDepth(3)
+                    .elisionLabel(n -> "[" + n.value + "...]")
+                    .build();
+            assertEquals(print(branches, cut(tree, 3), n -> "[" + (-n.value) + "...]"),
+                    TestNode.print(limited, tree));
+        }
+    }
+
+    private static TreePrinter.Builder<TestNode> builder(int branches) {
+        return TestNode.builder().squareBranches(branches > 0).lrAgnostic(branches == 2);
+    }
+
+    // prints a cut tree, labelling its placeholders (nodes with negative values) with elisionLabel
+    private static String print(int branches, TestNode tree, Function<TestNode, String> elisionLabel) {
+        TreePrinter<TestNode> printer = TreePrinter.<TestNode>builder(
+                n -> n.value < 0 ? elisionLabel.apply(n) : n.label(), n -> n.left, n -> n.right)
+                .squareBranches(branches > 0)
+                .lrAgnostic(branches == 2)
+                .build();
+        return TestNode.print(printer, tree);
+    }
+
+    // copy of tree with the nodes depth levels down replaced by leaves valued minus their value
+    private static TestNode cut(TestNode node, int depth) {
+        if (node == null) return null;
+        if (depth == 0) return new TestNode(-node.value);
+        return new TestNode(node.value, cut(node.left, depth - 1), cut(node.right, depth - 1));
+    }
+
+    // complete tree of the given depth, with values in heap order from first
+    private static TestNode complete(int depth, int first) {
+        if (depth == 0) return null;
+        return new TestNode(first, complete(depth - 1, 2 * first), complete(depth - 1, 2 * first + 1));
+    }
+}